@@ -0,0 +1,73 @@
+package collision;
+
+/**
+ * Overlap tests between circles and boxes on the floor of the house, worked
+ * out on plain numbers. The floor is the x-z plane; a box is lined up with
+ * the x and z axes. Shapes that only touch don't overlap.
+ */
+public final class Collision
+{
+  private Collision()
+  {
+  }
+
+  /**
+   * @return True if the circle with center (x, z) and the given radius
+   *         overlaps the box from (minX, minZ) to (maxX, maxZ).
+   */
+  public static boolean circleHitsBox(double x, double z, double radius,
+      double minX, double minZ, double maxX, double maxZ)
+  {
+    // The point of the box closest to the center of the circle.
+    double nearX = x < minX ? minX : x > maxX ? maxX : x;
+    double nearZ = z < minZ ? minZ : z > maxZ ? maxZ : z;
+    double dx = x - nearX;
+    double dz = z - nearZ;
+    return dx * dx + dz * dz < radius * radius;
+  }
+
+  /**
+   * @return True if the two circles overlap.
+   */
+  public static boolean circlesHit(double x0, double z0, double r0,
+      double x1, double z1, double r1)
+  {
+    double dx = x1 - x0;
+    double dz = z1 - z0;
+    double reach = r0 + r1;
+    return dx * dx + dz * dz < reach * reach;
+  }
+
+  /**
+   * Checks whether a point lies within an arc, using only a dot product, so
+   * no angles have to be worked out. The arc opens from (fromX, fromZ) to
+   * either side of a direction by a half angle, which is given by its cosine.
+   * The point at the tip of the arc counts as inside it.
+   *
+   * @param dirX
+   *          The x of the unit vector the arc faces along.
+   * @param dirZ
+   *          The z of the unit vector the arc faces along.
+   * @param cosHalfAngle
+   *          The cosine of the angle between the direction and either edge
+   *          of the arc.
+   * @return True if the point is strictly inside the arc.
+   */
+  public static boolean inArc(double fromX, double fromZ, double dirX,
+      double dirZ, double cosHalfAngle, double x, double z)
+  {
+    double dx = x - fromX;
+    double dz = z - fromZ;
+    double squared = dx * dx + dz * dz;
+    if (squared == 0)
+    {
+      return true;
+    }
+    // The cosine of the angle to the point is along / length, which is more
+    // than cosHalfAngle exactly when along * |along| is more than
+    // cosHalfAngle * |cosHalfAngle| * length^2, with no square root.
+    double along = dx * dirX + dz * dirZ;
+    return along * Math.abs(along) > cosHalfAngle * Math.abs(cosHalfAngle)
+        * squared;
+  }
+}
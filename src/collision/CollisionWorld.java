@@ -0,0 +1,473 @@
+package collision;
+
+import levels.Tile;
+
+/**
+ * The walls of a level and the creatures in it, kept as plain numbers so that
+ * collisions can be checked without going through the bounds of the nodes in
+ * the scene. Each wall tile at gameBoard[z][x] is the box from (x, z) to
+ * (x + 1, z + 1), and each creature is a circle whose position is copied in
+ * from its xPos and zPos. The circles are kept in a SpatialHash, so checking
+ * against them costs the same however many there are.
+ *
+ * Nothing here needs a Scene or the JavaFX thread. The walls never change
+ * after the world is built, and checks only read it, so any number of threads
+ * can check collisions at once as long as no bodies are being moved at the
+ * same time.
+ *
+ * How far every point is from the nearest wall is worked out when the world
+ * is built, in wallDistance, for questions about the room around a point
+ * rather than whether a circle touches a wall.
+ */
+public class CollisionWorld
+{
+  /**
+   * The width of the squares the bodies are sorted into, a little more than
+   * the reach of the player's stab.
+   */
+  public static final double BODY_CELL_SIZE = 2;
+  /**
+   * The gap left between a circle and a wall it is stopped against, so that
+   * sliding along a flat wall doesn't catch on the corners between its tiles.
+   */
+  public static final double SKIN = 1e-3;
+  /**
+   * The most times a move is turned along a wall it runs into, and the most
+   * walls a circle is pushed out of before it moves.
+   */
+  public static final int MAX_SLIDES = 4;
+
+  public final int width;
+  public final int height;
+
+  // isWall[z * width + x] is true if gameBoard[z][x] is a wall.
+  private final boolean[] isWall;
+
+  public final WallDistance wallDistance;
+
+  private final SpatialHash bodies = new SpatialHash(BODY_CELL_SIZE);
+
+  /**
+   * @param gameBoard
+   *          The board of tiles, indexed as gameBoard[z][x].
+   */
+  public CollisionWorld(Tile[][] gameBoard)
+  {
+    height = gameBoard.length;
+    width = height == 0 ? 0 : gameBoard[0].length;
+    isWall = new boolean[width * height];
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        isWall[z * width + x] = gameBoard[z][x].isWall;
+      }
+    }
+    wallDistance = new WallDistance(gameBoard);
+  }
+
+  /**
+   * @return True if gameBoard[z][x] is a wall. Tiles off the board are not.
+   */
+  public boolean isWall(int z, int x)
+  {
+    return z >= 0 && x >= 0 && z < height && x < width
+        && isWall[z * width + x];
+  }
+
+  /**
+   * Finds a wall tile that a circle overlaps. Only the tiles under the
+   * circle's bounds are looked at, going along x and then down z.
+   *
+   * @param x
+   *          The x coordinate of the center of the circle.
+   * @param z
+   *          The z coordinate of the center of the circle.
+   * @param radius
+   *          The radius of the circle.
+   * @return The wall tile as z * width + x, or -1 if the circle is clear of
+   *         all of them.
+   */
+  public int wallHit(double x, double z, double radius)
+  {
+    int minX = Math.max((int) Math.floor(x - radius), 0);
+    int maxX = Math.min((int) Math.floor(x + radius), width - 1);
+    int minZ = Math.max((int) Math.floor(z - radius), 0);
+    int maxZ = Math.min((int) Math.floor(z + radius), height - 1);
+    for (int tz = minZ; tz <= maxZ; tz++)
+    {
+      for (int tx = minX; tx <= maxX; tx++)
+      {
+        if (isWall[tz * width + tx]
+            && Collision.circleHitsBox(x, z, radius, tx, tz, tx + 1, tz + 1))
+        {
+          return tz * width + tx;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return True if the circle overlaps any wall.
+   */
+  public boolean hitsWall(double x, double z, double radius)
+  {
+    return wallHit(x, z, radius) >= 0;
+  }
+
+  /**
+   * Moves a circle as far as it can go toward where it is headed. When it runs
+   * into a wall it stops just short of it, and whatever is left of the move is
+   * turned to run along the wall instead, so a circle heading into a wall at
+   * an angle slides along it. If the circle starts out overlapping walls, it
+   * is first pushed out of them by the shortest way.
+   *
+   * The work is bounded: only the tiles under the path of the circle are
+   * looked at, and a move is turned at most MAX_SLIDES times.
+   *
+   * @param x
+   *          The x coordinate of the center of the circle.
+   * @param z
+   *          The z coordinate of the center of the circle.
+   * @param radius
+   *          The radius of the circle.
+   * @param dx
+   *          How far the circle is headed along x.
+   * @param dz
+   *          How far the circle is headed along z.
+   * @param result
+   *          An array of at least four that is filled with the x and z that
+   *          the circle ends at and, if it touched a wall, the x and z of the
+   *          unit normal of the last wall it touched, pointing away from it.
+   * @return True if the circle touched a wall.
+   */
+  public boolean move(double x, double z, double radius, double dx,
+      double dz, double[] result)
+  {
+    result[2] = 0;
+    result[3] = 0;
+    boolean touched = pushOut(x, z, radius, result);
+    x = result[0];
+    z = result[1];
+    for (int slide = 0; slide < MAX_SLIDES; slide++)
+    {
+      double length = Math.sqrt(dx * dx + dz * dz);
+      if (length < SKIN)
+      {
+        break;
+      }
+      double t = sweep(x, z, radius, dx, dz, result);
+      if (t >= 1)
+      {
+        x += dx;
+        z += dz;
+        break;
+      }
+      touched = true;
+      double travel = Math.max(t - SKIN / length, 0);
+      x += dx * travel;
+      z += dz * travel;
+      dx *= 1 - travel;
+      dz *= 1 - travel;
+      // Take away the part of the move that goes into the wall.
+      double into = dx * result[2] + dz * result[3];
+      if (into < 0)
+      {
+        dx -= into * result[2];
+        dz -= into * result[3];
+      }
+    }
+    result[0] = x;
+    result[1] = z;
+    return touched;
+  }
+
+  /**
+   * Pushes a circle out of the walls it overlaps, the deepest first.
+   *
+   * @return True if it overlapped any.
+   */
+  private boolean pushOut(double x, double z, double radius, double[] result)
+  {
+    boolean pushed = false;
+    for (int round = 0; round < MAX_SLIDES; round++)
+    {
+      int minX = Math.max((int) Math.floor(x - radius), 0);
+      int maxX = Math.min((int) Math.floor(x + radius), width - 1);
+      int minZ = Math.max((int) Math.floor(z - radius), 0);
+      int maxZ = Math.min((int) Math.floor(z + radius), height - 1);
+      double deepest = 0;
+      double outX = 0;
+      double outZ = 0;
+      for (int tz = minZ; tz <= maxZ; tz++)
+      {
+        for (int tx = minX; tx <= maxX; tx++)
+        {
+          if (!isWall[tz * width + tx])
+          {
+            continue;
+          }
+          double nearX = Math.max(tx, Math.min(x, tx + 1));
+          double nearZ = Math.max(tz, Math.min(z, tz + 1));
+          double awayX = x - nearX;
+          double awayZ = z - nearZ;
+          double distance = Math.sqrt(awayX * awayX + awayZ * awayZ);
+          double depth;
+          double nx;
+          double nz;
+          if (distance > 0)
+          {
+            depth = radius - distance;
+            nx = awayX / distance;
+            nz = awayZ / distance;
+          } else
+          {
+            // The center is inside the tile, so it leaves by the nearest
+            // side that doesn't open onto another wall.
+            double left = isWall(tz, tx - 1) ? 2 : x - tx;
+            double right = isWall(tz, tx + 1) ? 2 : tx + 1 - x;
+            double top = isWall(tz - 1, tx) ? 2 : z - tz;
+            double bottom = isWall(tz + 1, tx) ? 2 : tz + 1 - z;
+            double nearest = Math.min(Math.min(left, right),
+                Math.min(top, bottom));
+            depth = radius + nearest;
+            nx = nearest == left ? -1 : nearest == right ? 1 : 0;
+            nz = nx != 0 ? 0 : nearest == top ? -1 : 1;
+          }
+          if (depth > deepest)
+          {
+            deepest = depth;
+            outX = nx;
+            outZ = nz;
+          }
+        }
+      }
+      if (deepest <= 0)
+      {
+        break;
+      }
+      x += outX * (deepest + SKIN);
+      z += outZ * (deepest + SKIN);
+      result[2] = outX;
+      result[3] = outZ;
+      pushed = true;
+    }
+    result[0] = x;
+    result[1] = z;
+    return pushed;
+  }
+
+  /**
+   * Finds how far along a move a circle first touches a wall. Touching a tile
+   * means the center comes within the radius of it, which is the same as the
+   * center entering the tile grown by the radius on every side, with rounded
+   * corners. That shape is two crossed boxes and four circles, and the first
+   * of them the center enters is where the move stops.
+   *
+   * @return The fraction of the move before the circle touches a wall, with
+   *         the normal of the wall written to result[2] and result[3], or 1
+   *         if it touches none.
+   */
+  private double sweep(double x, double z, double radius, double dx,
+      double dz, double[] result)
+  {
+    int minX = Math.max((int) Math.floor(Math.min(x, x + dx) - radius), 0);
+    int maxX = Math.min((int) Math.floor(Math.max(x, x + dx) + radius),
+        width - 1);
+    int minZ = Math.max((int) Math.floor(Math.min(z, z + dz) - radius), 0);
+    int maxZ = Math.min((int) Math.floor(Math.max(z, z + dz) + radius),
+        height - 1);
+    double first = 1;
+    for (int tz = minZ; tz <= maxZ; tz++)
+    {
+      for (int tx = minX; tx <= maxX; tx++)
+      {
+        if (!isWall[tz * width + tx])
+        {
+          continue;
+        }
+        // The tile grown along x, then along z, then its rounded corners.
+        first = boxEntry(x, z, dx, dz, tx - radius, tz, tx + 1 + radius,
+            tz + 1, first, result);
+        first = boxEntry(x, z, dx, dz, tx, tz - radius, tx + 1,
+            tz + 1 + radius, first, result);
+        for (int corner = 0; corner < 4; corner++)
+        {
+          first = circleEntry(x, z, dx, dz, tx + (corner & 1),
+              tz + (corner >> 1), radius, first, result);
+        }
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Finds when a point moving from (x, z) by (dx, dz) enters a box, if it does
+   * before the given time.
+   *
+   * @return The fraction of the move when it enters, with the normal of the
+   *         side it enters by written to result[2] and result[3], or first if
+   *         it doesn't enter sooner.
+   */
+  private static double boxEntry(double x, double z, double dx, double dz,
+      double minX, double minZ, double maxX, double maxZ, double first,
+      double[] result)
+  {
+    double enterX;
+    double leaveX;
+    if (dx == 0)
+    {
+      if (x <= minX || x >= maxX)
+      {
+        return first;
+      }
+      enterX = Double.NEGATIVE_INFINITY;
+      leaveX = Double.POSITIVE_INFINITY;
+    } else
+    {
+      double a = (minX - x) / dx;
+      double b = (maxX - x) / dx;
+      enterX = Math.min(a, b);
+      leaveX = Math.max(a, b);
+    }
+    double enterZ;
+    double leaveZ;
+    if (dz == 0)
+    {
+      if (z <= minZ || z >= maxZ)
+      {
+        return first;
+      }
+      enterZ = Double.NEGATIVE_INFINITY;
+      leaveZ = Double.POSITIVE_INFINITY;
+    } else
+    {
+      double a = (minZ - z) / dz;
+      double b = (maxZ - z) / dz;
+      enterZ = Math.min(a, b);
+      leaveZ = Math.max(a, b);
+    }
+    double enter = Math.max(enterX, enterZ);
+    double leave = Math.min(leaveX, leaveZ);
+    // A point that starts inside or only grazes the box doesn't count.
+    if (enter < 0 || enter >= leave || enter >= first)
+    {
+      return first;
+    }
+    if (enterX > enterZ)
+    {
+      result[2] = dx > 0 ? -1 : 1;
+      result[3] = 0;
+    } else
+    {
+      result[2] = 0;
+      result[3] = dz > 0 ? -1 : 1;
+    }
+    return enter;
+  }
+
+  /**
+   * Finds when a point moving from (x, z) by (dx, dz) comes within the radius
+   * of a corner, if it does before the given time.
+   *
+   * @return The fraction of the move when it does, with the normal pointing
+   *         from the corner written to result[2] and result[3], or first if
+   *         it doesn't sooner.
+   */
+  private static double circleEntry(double x, double z, double dx, double dz,
+      double cornerX, double cornerZ, double radius, double first,
+      double[] result)
+  {
+    double fromX = x - cornerX;
+    double fromZ = z - cornerZ;
+    double a = dx * dx + dz * dz;
+    double b = fromX * dx + fromZ * dz;
+    double c = fromX * fromX + fromZ * fromZ - radius * radius;
+    // Starting inside, or moving away, doesn't count.
+    if (c < 0 || b >= 0)
+    {
+      return first;
+    }
+    double disc = b * b - a * c;
+    if (disc <= 0)
+    {
+      return first;
+    }
+    double t = (-b - Math.sqrt(disc)) / a;
+    if (t < 0 || t >= first)
+    {
+      return first;
+    }
+    result[2] = (fromX + dx * t) / radius;
+    result[3] = (fromZ + dz * t) / radius;
+    return t;
+  }
+
+  /**
+   * Sets how many bodies are in the world. The ones already there keep their
+   * places.
+   */
+  public void setBodyCount(int count)
+  {
+    bodies.setCount(count);
+  }
+
+  /**
+   * @return The number of bodies in the world.
+   */
+  public int getBodyCount()
+  {
+    return bodies.getCount();
+  }
+
+  /**
+   * Moves a body, usually to the xPos and zPos of the creature it stands for.
+   *
+   * @param body
+   *          The index of the body, less than the body count.
+   */
+  public void setBody(int body, double x, double z, double radius)
+  {
+    bodies.move(body, x, z, radius);
+  }
+
+  /**
+   * Finds the first body that a circle overlaps.
+   *
+   * @param ignore
+   *          A body to leave out, such as the one doing the checking, or -1.
+   * @return The lowest index of a body the circle overlaps, or -1 if it is
+   *         clear of them all.
+   */
+  public int bodyHit(double x, double z, double radius, int ignore)
+  {
+    return bodies.firstHit(x, z, radius, ignore);
+  }
+
+  /**
+   * Finds every body that a circle overlaps.
+   *
+   * @param found
+   *          The array to fill with the indices of the bodies, in no order.
+   * @return The number of bodies written.
+   */
+  public int bodyHits(double x, double z, double radius, int[] found)
+  {
+    return bodies.allHits(x, z, radius, found);
+  }
+
+  /**
+   * Finds every body that a circle overlaps and whose center lies within an
+   * arc opening from the circle's center. See Collision.inArc.
+   *
+   * @param found
+   *          The array to fill with the indices of the bodies, in no order.
+   * @return The number of bodies written.
+   */
+  public int bodyArcHits(double x, double z, double radius, double dirX,
+      double dirZ, double cosHalfAngle, int[] found)
+  {
+    return bodies.arcHits(x, z, radius, dirX, dirZ, cosHalfAngle, found);
+  }
+}
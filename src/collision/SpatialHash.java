@@ -0,0 +1,287 @@
+package collision;
+
+import java.util.Arrays;
+
+/**
+ * Circles that move around the floor, sorted into the squares of a uniform
+ * grid so that a check only looks at the circles in the squares around it.
+ * The squares are kept in a table by a hash of their coordinates, so the
+ * grid has no edges and costs the same however big the house is.
+ *
+ * Each circle is numbered, the same as the list of creatures it stands for,
+ * and is only moved to a new square when it crosses into one. The table grows
+ * along with the number of circles, so the buckets stay short, and nothing is
+ * allocated once it has room for all of them.
+ */
+public class SpatialHash
+{
+  private static final int DEFAULT_BUCKETS = 1024;
+
+  public final double cellSize;
+  private int mask;
+
+  // The first circle in each bucket, or -1, and the circles before and after
+  // each one in its bucket. There are always at least as many buckets as
+  // circles.
+  private int[] head;
+  private int[] next = new int[0];
+  private int[] previous = new int[0];
+  // The bucket each circle is in, or -1 if it has been taken out, and the
+  // square it is in.
+  private int[] bucketOf = new int[0];
+  private int[] cellX = new int[0];
+  private int[] cellZ = new int[0];
+
+  private double[] x = new double[0];
+  private double[] z = new double[0];
+  private double[] radius = new double[0];
+  // The largest radius of any circle, so a check knows how far around it to
+  // look.
+  private double maxRadius = 0;
+  private int count = 0;
+
+  /**
+   * @param cellSize
+   *          The width of a square of the grid. Checks are quickest when this
+   *          is about the size of the circles being checked.
+   */
+  public SpatialHash(double cellSize)
+  {
+    this.cellSize = cellSize;
+    head = new int[DEFAULT_BUCKETS];
+    mask = DEFAULT_BUCKETS - 1;
+    Arrays.fill(head, -1);
+  }
+
+  /**
+   * Sets how many circles there are. The ones already there keep their
+   * places, and new ones are left out until they are moved.
+   */
+  public void setCount(int newCount)
+  {
+    for (int i = newCount; i < count; i++)
+    {
+      remove(i);
+    }
+    if (newCount > x.length)
+    {
+      int capacity = Math.max(newCount, x.length * 2);
+      next = Arrays.copyOf(next, capacity);
+      previous = Arrays.copyOf(previous, capacity);
+      cellX = Arrays.copyOf(cellX, capacity);
+      cellZ = Arrays.copyOf(cellZ, capacity);
+      x = Arrays.copyOf(x, capacity);
+      z = Arrays.copyOf(z, capacity);
+      radius = Arrays.copyOf(radius, capacity);
+      int old = bucketOf.length;
+      bucketOf = Arrays.copyOf(bucketOf, capacity);
+      Arrays.fill(bucketOf, old, capacity, -1);
+    }
+    count = newCount;
+    if (count > head.length)
+    {
+      rehash(Integer.highestOneBit(count - 1) << 1);
+    }
+  }
+
+  private void rehash(int buckets)
+  {
+    head = new int[buckets];
+    mask = buckets - 1;
+    Arrays.fill(head, -1);
+    for (int i = 0; i < count; i++)
+    {
+      if (bucketOf[i] >= 0)
+      {
+        int bucket = bucket(cellX[i], cellZ[i]);
+        bucketOf[i] = bucket;
+        previous[i] = -1;
+        next[i] = head[bucket];
+        if (head[bucket] >= 0)
+        {
+          previous[head[bucket]] = i;
+        }
+        head[bucket] = i;
+      }
+    }
+  }
+
+  /**
+   * @return The number of circles, including any that have been taken out.
+   */
+  public int getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Moves a circle, putting it back in if it had been taken out.
+   *
+   * @param body
+   *          The number of the circle, less than the count.
+   */
+  public void move(int body, double newX, double newZ, double newRadius)
+  {
+    x[body] = newX;
+    z[body] = newZ;
+    radius[body] = newRadius;
+    maxRadius = Math.max(maxRadius, newRadius);
+    int cx = (int) Math.floor(newX / cellSize);
+    int cz = (int) Math.floor(newZ / cellSize);
+    if (bucketOf[body] >= 0 && cellX[body] == cx && cellZ[body] == cz)
+    {
+      return;
+    }
+    remove(body);
+    int bucket = bucket(cx, cz);
+    cellX[body] = cx;
+    cellZ[body] = cz;
+    bucketOf[body] = bucket;
+    previous[body] = -1;
+    next[body] = head[bucket];
+    if (head[bucket] >= 0)
+    {
+      previous[head[bucket]] = body;
+    }
+    head[bucket] = body;
+  }
+
+  /**
+   * Takes a circle out, so that no check finds it until it is moved again.
+   */
+  public void remove(int body)
+  {
+    int bucket = bucketOf[body];
+    if (bucket < 0)
+    {
+      return;
+    }
+    if (previous[body] >= 0)
+    {
+      next[previous[body]] = next[body];
+    } else
+    {
+      head[bucket] = next[body];
+    }
+    if (next[body] >= 0)
+    {
+      previous[next[body]] = previous[body];
+    }
+    bucketOf[body] = -1;
+  }
+
+  /**
+   * Finds the circle with the lowest number that overlaps the given one.
+   *
+   * @param ignore
+   *          A circle to leave out, such as the one doing the checking, or -1.
+   * @return The number of the circle, or -1 if none overlap.
+   */
+  public int firstHit(double atX, double atZ, double atRadius, int ignore)
+  {
+    double reach = atRadius + maxRadius;
+    int minX = (int) Math.floor((atX - reach) / cellSize);
+    int maxX = (int) Math.floor((atX + reach) / cellSize);
+    int minZ = (int) Math.floor((atZ - reach) / cellSize);
+    int maxZ = (int) Math.floor((atZ + reach) / cellSize);
+    int first = -1;
+    for (int cz = minZ; cz <= maxZ; cz++)
+    {
+      for (int cx = minX; cx <= maxX; cx++)
+      {
+        for (int i = head[bucket(cx, cz)]; i >= 0; i = next[i])
+        {
+          // Other squares can share the bucket, and are checked on their own.
+          if (cellX[i] == cx && cellZ[i] == cz && i != ignore
+              && (first < 0 || i < first)
+              && Collision.circlesHit(atX, atZ, atRadius, x[i], z[i],
+                  radius[i]))
+          {
+            first = i;
+          }
+        }
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Finds every circle that overlaps the given one.
+   *
+   * @param found
+   *          The array to fill with the numbers of the circles, in no order.
+   *          Any beyond its length are left out.
+   * @return The number of circles written.
+   */
+  public int allHits(double atX, double atZ, double atRadius, int[] found)
+  {
+    double reach = atRadius + maxRadius;
+    int minX = (int) Math.floor((atX - reach) / cellSize);
+    int maxX = (int) Math.floor((atX + reach) / cellSize);
+    int minZ = (int) Math.floor((atZ - reach) / cellSize);
+    int maxZ = (int) Math.floor((atZ + reach) / cellSize);
+    int written = 0;
+    for (int cz = minZ; cz <= maxZ; cz++)
+    {
+      for (int cx = minX; cx <= maxX; cx++)
+      {
+        for (int i = head[bucket(cx, cz)]; i >= 0 && written < found.length;
+            i = next[i])
+        {
+          if (cellX[i] == cx && cellZ[i] == cz
+              && Collision.circlesHit(atX, atZ, atRadius, x[i], z[i],
+                  radius[i]))
+          {
+            found[written++] = i;
+          }
+        }
+      }
+    }
+    return written;
+  }
+
+  /**
+   * Finds every circle that overlaps the given one and whose center lies
+   * within an arc opening from the given circle's center, as a stab or a
+   * swing reaches. See Collision.inArc.
+   *
+   * @param found
+   *          The array to fill with the numbers of the circles, in no order.
+   *          Any beyond its length are left out.
+   * @return The number of circles written.
+   */
+  public int arcHits(double atX, double atZ, double atRadius, double dirX,
+      double dirZ, double cosHalfAngle, int[] found)
+  {
+    double reach = atRadius + maxRadius;
+    int minX = (int) Math.floor((atX - reach) / cellSize);
+    int maxX = (int) Math.floor((atX + reach) / cellSize);
+    int minZ = (int) Math.floor((atZ - reach) / cellSize);
+    int maxZ = (int) Math.floor((atZ + reach) / cellSize);
+    int written = 0;
+    for (int cz = minZ; cz <= maxZ; cz++)
+    {
+      for (int cx = minX; cx <= maxX; cx++)
+      {
+        for (int i = head[bucket(cx, cz)]; i >= 0 && written < found.length;
+            i = next[i])
+        {
+          if (cellX[i] == cx && cellZ[i] == cz
+              && Collision.circlesHit(atX, atZ, atRadius, x[i], z[i],
+                  radius[i])
+              && Collision.inArc(atX, atZ, dirX, dirZ, cosHalfAngle, x[i],
+                  z[i]))
+          {
+            found[written++] = i;
+          }
+        }
+      }
+    }
+    return written;
+  }
+
+  private int bucket(int cx, int cz)
+  {
+    return (cx * 73856093 ^ cz * 19349663) & mask;
+  }
+}
@@ -0,0 +1,274 @@
+package collision;
+
+import java.util.Arrays;
+
+import levels.Tile;
+
+/**
+ * How far the points of a level are from the nearest wall, worked out once
+ * when the level is built so that asking how much room there is around a
+ * point is a single array read instead of a collision scan.
+ *
+ * The distances are kept on a lattice of points half a tile apart: the
+ * corners, the middles of the edges and the centers of every tile. The
+ * nearest point of a wall to one of these is always another of them, so the
+ * distance to the nearest wall can be found exactly by the two-pass Euclidean
+ * distance transform of Felzenszwalb and Huttenlocher, first down every
+ * column of the lattice and then along every row, in time linear in the size
+ * of the board. Between the points, the distance changes by no more than the
+ * distance moved, so everywhere else it is known to within the distance to
+ * the nearest point of the lattice, at most a third of a tile, either way.
+ *
+ * As in the CollisionWorld, each wall at gameBoard[z][x] is the box from
+ * (x, z) to (x + 1, z + 1), and the tiles off the board are not walls. The
+ * field never changes after it is built, so it can be read from any thread.
+ *
+ * Pedro F. Felzenszwalb and Daniel P. Huttenlocher, "Distance Transforms of
+ * Sampled Functions", Theory of Computing 8, 2012.
+ */
+public class WallDistance
+{
+  public final int width;
+  public final int height;
+
+  // The lattice point at (x / 2, z / 2) is number z * columns + x. squared[]
+  // holds the squared distance from each one to the nearest wall, in half
+  // tiles, and nearest[] the number of the point of the wall it is nearest
+  // to. Without any walls they are Integer.MAX_VALUE and -1.
+  private final int columns;
+  private final int rows;
+  private final int[] squared;
+  private final int[] nearest;
+
+  /**
+   * @param gameBoard
+   *          The board of tiles, indexed as gameBoard[z][x].
+   */
+  public WallDistance(Tile[][] gameBoard)
+  {
+    height = gameBoard.length;
+    width = height == 0 ? 0 : gameBoard[0].length;
+    columns = 2 * width + 1;
+    rows = 2 * height + 1;
+    squared = new int[columns * rows];
+    nearest = new int[columns * rows];
+
+    // A point is on a wall if any wall's box takes it in, edges included.
+    boolean[] onWall = new boolean[columns * rows];
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        if (gameBoard[z][x].isWall)
+        {
+          for (int i = 2 * z; i <= 2 * z + 2; i++)
+          {
+            for (int j = 2 * x; j <= 2 * x + 2; j++)
+            {
+              onWall[i * columns + j] = true;
+            }
+          }
+        }
+      }
+    }
+
+    // Down every column, the nearest point on a wall in that column: a sweep
+    // down and a sweep back up.
+    int[] columnWall = new int[columns * rows];
+    for (int j = 0; j < columns; j++)
+    {
+      int last = -1;
+      for (int i = 0; i < rows; i++)
+      {
+        if (onWall[i * columns + j])
+        {
+          last = i;
+        }
+        columnWall[i * columns + j] = last;
+      }
+      last = -1;
+      for (int i = rows - 1; i >= 0; i--)
+      {
+        if (onWall[i * columns + j])
+        {
+          last = i;
+        }
+        int above = columnWall[i * columns + j];
+        if (last >= 0 && (above < 0 || last - i < i - above))
+        {
+          columnWall[i * columns + j] = last;
+        }
+      }
+    }
+
+    // Along every row, the lower envelope of the parabolas rising from each
+    // point by the squared distance to its column's nearest wall.
+    int[] vertex = new int[columns];
+    double[] from = new double[columns + 1];
+    long[] rise = new long[columns];
+    for (int i = 0; i < rows; i++)
+    {
+      int row = i * columns;
+      for (int j = 0; j < columns; j++)
+      {
+        int wall = columnWall[row + j];
+        rise[j] = wall < 0 ? -1 : (long) (wall - i) * (wall - i);
+      }
+      int parabolas = 0;
+      for (int j = 0; j < columns; j++)
+      {
+        if (rise[j] < 0)
+        {
+          continue;
+        }
+        double start = Double.NEGATIVE_INFINITY;
+        while (parabolas > 0)
+        {
+          int top = vertex[parabolas - 1];
+          start = ((rise[j] + (long) j * j) - (rise[top] + (long) top * top))
+              / (2.0 * (j - top));
+          if (start > from[parabolas - 1])
+          {
+            break;
+          }
+          parabolas--;
+          start = Double.NEGATIVE_INFINITY;
+        }
+        vertex[parabolas] = j;
+        from[parabolas] = start;
+        parabolas++;
+      }
+      if (parabolas == 0)
+      {
+        Arrays.fill(squared, row, row + columns, Integer.MAX_VALUE);
+        Arrays.fill(nearest, row, row + columns, -1);
+        continue;
+      }
+      from[parabolas] = Double.POSITIVE_INFINITY;
+      int k = 0;
+      for (int j = 0; j < columns; j++)
+      {
+        while (from[k + 1] < j)
+        {
+          k++;
+        }
+        int source = vertex[k];
+        long distance = (long) (j - source) * (j - source) + rise[source];
+        squared[row + j] = (int) Math.min(distance, Integer.MAX_VALUE);
+        nearest[row + j] = columnWall[row + source] * columns + source;
+      }
+    }
+  }
+
+  /**
+   * @return The distance from the center of gameBoard[z][x] to the nearest
+   *         wall, 0 for a wall itself, or Double.POSITIVE_INFINITY if there
+   *         are no walls.
+   */
+  public double distance(int z, int x)
+  {
+    return halfTiles(squared[(2 * z + 1) * columns + 2 * x + 1]);
+  }
+
+  private static double halfTiles(int squaredDistance)
+  {
+    if (squaredDistance == Integer.MAX_VALUE)
+    {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Math.sqrt(squaredDistance) / 2;
+  }
+
+  /**
+   * Finds how far a point is from the nearest wall. The answer is never more
+   * than the true distance, and is exact at the corners, the middles of the
+   * edges and the centers of the tiles.
+   *
+   * @return The room around the point, or 0 if it is off the board.
+   */
+  public double clearance(double x, double z)
+  {
+    if (!(x >= 0 && z >= 0 && x <= width && z <= height))
+    {
+      return 0;
+    }
+    int j = (int) (2 * x + .5);
+    int i = (int) (2 * z + .5);
+    double offsetX = x - j * .5;
+    double offsetZ = z - i * .5;
+    double offset = Math.sqrt(offsetX * offsetX + offsetZ * offsetZ);
+    return Math.max(halfTiles(squared[i * columns + j]) - offset, 0);
+  }
+
+  /**
+   * @return True if a circle of the given radius at the point is certain to
+   *         be clear of every wall. A false answer only means a closer check
+   *         is needed.
+   */
+  public boolean fits(double x, double z, double radius)
+  {
+    if (!(x >= 0 && z >= 0 && x <= width && z <= height))
+    {
+      return false;
+    }
+    int j = (int) (2 * x + .5);
+    int i = (int) (2 * z + .5);
+    double offsetX = x - j * .5;
+    double offsetZ = z - i * .5;
+    // The same as clearance(x, z) > radius, with the distances in half tiles
+    // and squared, so only the offset needs a square root.
+    double reach = 2 * (radius + Math.sqrt(offsetX * offsetX
+        + offsetZ * offsetZ));
+    return squared[i * columns + j] > reach * reach;
+  }
+
+  /**
+   * Finds the way directly away from the nearest wall, for steering around
+   * it. The nearest points of the walls to the four lattice points around
+   * the point are looked at, and the way is taken from the closest of them.
+   *
+   * @param result
+   *          An array of at least two that is filled with the x and z of the
+   *          unit vector pointing away from the nearest wall, or zeros if the
+   *          point is off the board, on a wall, or there are no walls.
+   */
+  public void awayFromWall(double x, double z, double[] result)
+  {
+    result[0] = 0;
+    result[1] = 0;
+    if (!(x >= 0 && z >= 0 && x < width && z < height))
+    {
+      return;
+    }
+    int j = (int) (2 * x);
+    int i = (int) (2 * z);
+    double closest = Double.POSITIVE_INFINITY;
+    for (int corner = 0; corner < 4; corner++)
+    {
+      int wall = nearest[(i + (corner >> 1)) * columns + j + (corner & 1)];
+      if (wall < 0)
+      {
+        continue;
+      }
+      double dx = x - (wall % columns) / 2.0;
+      double dz = z - (wall / columns) / 2.0;
+      double squaredLength = dx * dx + dz * dz;
+      if (squaredLength < closest)
+      {
+        closest = squaredLength;
+        result[0] = dx;
+        result[1] = dz;
+      }
+    }
+    double length = Math.sqrt(closest);
+    if (length > 0 && closest < Double.POSITIVE_INFINITY)
+    {
+      result[0] /= length;
+      result[1] /= length;
+    } else
+    {
+      result[0] = 0;
+      result[1] = 0;
+    }
+  }
+}
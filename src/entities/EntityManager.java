@@ -4,18 +4,24 @@ package entities;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import collision.CollisionWorld;
+import collision.SpatialHash;
 import game_engine.Attributes;
 import game_engine.Scenes;
 import game_engine.ZombieHouse3d;
+import graphing.CooperativeSearch;
+import graphing.FlowField;
+import graphing.NavGrid;
+import graphing.PathResult;
+import graphing.PlanningService;
+import graphing.ReservationTable;
+import graphing.TileGraph;
 import gui.Main;
 import javafx.scene.layout.HBox;
-import javafx.scene.shape.Box;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Shape3D;
 import levels.Tile;
+import levels.TriggerLayer;
 import sounds.Sound;
 import sounds.SoundManager;
-import utilities.ZombieBoardRenderer;
 
 /**
  * @author Jeffrey McCall
@@ -45,6 +51,17 @@ public class EntityManager
   public ArrayList<PlayerClone> playerClones = new ArrayList<>();
   private ArrayList<PointTime> currentPointTimeList = new ArrayList<PointTime>();
 
+  // The farthest distance from the player, in moves, that the shared flow
+  // field is filled in to. Zombies farther away than this are treated as
+  // being out of range, the same as a path length of 30 always has been.
+  public static final int PLAYER_FIELD_RADIUS = 30;
+  private FlowField playerField;
+  private int[] targetCells = new int[1];
+  private ReservationTable reservations;
+  private CooperativeSearch cooperativeSearch;
+  public PathScheduler pathScheduler = new PathScheduler(Attributes.Zombie_Path_Budget);
+  public PlanningService<Zombie> planningService = new PlanningService<>();
+
   /**
    * Constructor for EntityManager.
    *
@@ -70,72 +87,131 @@ public class EntityManager
   // The number of wall tiles on the map. Used to check for collisions.
   public int numTiles = 0;
 
+  // The walls of the 3D board and the zombies on it, for collision checks
+  // that don't go through the bounds of the nodes in the scene. The zombies
+  // are copied in at the start of every tick, as body i for zombies.get(i).
+  public CollisionWorld collisionWorld;
+  // The triggers laid out on the tiles of the 3D board, such as the exits.
+  // The player's position is handed to it every tick.
+  public TriggerLayer triggerLayer;
+  // The zombie clones, copied in at the same time as body i for
+  // zombieClones.get(i).
+  private SpatialHash zombieCloneBodies =
+      new SpatialHash(CollisionWorld.BODY_CELL_SIZE);
+  private int[] nearbyBodies = new int[16];
+  // Room for every body a stab can reach at once, even in a crowd.
+  private int[] stabbedBodies = new int[64];
+
   /**
-   * Checks if the zombie is colliding with anything.
+   * Collision detection for 3D player objects.
    *
-   * @return False if no collision detected. True if there is a collision.
+   * @param x      The x coordinate of the player.
+   * @param z      The z coordinate of the player.
+   * @param radius How far from the player a zombie has to be to be clear.
+   * @return The first zombie within reach, or null if there isn't one.
    */
-  public boolean checkTwoD(Circle zombieCirc)
+  public Zombie checkPlayerCollision(double x, double z, double radius)
   {
-    for (int i = 0; i < numTiles; i++)
-    {
-      if (zombieCirc.getLayoutBounds()
-              .intersects(ZombieBoardRenderer.walls.get(i).getLayoutBounds()))
-      {
-        return true;
-      }
-    }
-    return false;
+    int body = collisionWorld.bodyHit(x, z, radius, -1);
+    return body < 0 ? null : zombies.get(body);
   }
 
   /**
-   * Collision detection for 3D zombie objects.
+   * Checks a zombie against the others.
    *
-   * @return True if there is a collision. False if there isn't.
+   * @param zombie The zombie doing the checking.
+   * @return The first other zombie it is touching, or null if there isn't
+   *         one.
    */
-  public Box getWallCollision(Shape3D shape)
+  public Zombie checkZombieCollision(Zombie zombie)
   {
-    for (int i = 0; i < numTiles; i++)
+    int count = collisionWorld.bodyHits(zombie.xPos, zombie.zPos,
+            Zombie.RADIUS, nearbyBodies);
+    int first = -1;
+    for (int i = 0; i < count; i++)
     {
-      if (shape.getBoundsInParent()
-              .intersects(zombieHouse.walls.get(i).getBoundsInParent()))
+      int body = nearbyBodies[i];
+      if (zombies.get(body) != zombie && (first < 0 || body < first))
       {
-        return zombieHouse.walls.get(i);
+        first = body;
       }
     }
-    return null;
+    return first < 0 ? null : zombies.get(first);
   }
 
   /**
-   * Collision detection for 3D player objects.
+   * Collision detection between the player and the zombie clones.
    *
-   * @param player The shape that represents the zombie.
-   * @return True if there is a collision. False if there isn't.
+   * @param x      The x coordinate of the player.
+   * @param z      The z coordinate of the player.
+   * @param radius How far from the player a clone has to be to be clear.
+   * @return The first zombie clone within reach, or null if there isn't one.
    */
-  public Zombie checkPlayerCollision(Shape3D player)
+  public ZombieClone checkPlayerCloneCollision(double x, double z,
+          double radius)
   {
-    for (Zombie zombie : zombies)
+    int body = zombieCloneBodies.firstHit(x, z, radius, -1);
+    return body < 0 ? null : zombieClones.get(body);
+  }
+
+  /**
+   * Finds every zombie and zombie clone that a stab reaches: the ones whose
+   * bodies overlap a circle of the stab's reach, and whose centers are within
+   * the arc it sweeps. Each is tested with squared distances and a dot
+   * product, so the only angles worked out are the stab's own.
+   *
+   * @param x          The x coordinate the stab comes from.
+   * @param z          The z coordinate the stab comes from.
+   * @param reach      How far the stab reaches.
+   * @param angle      The way the stab faces in degrees, 0 along z and 90
+   *                   along x.
+   * @param halfAngle  How far to either side of that the arc opens, in
+   *                   degrees.
+   * @param hitZombies Cleared and filled with the zombies reached.
+   * @param hitClones  Cleared and filled with the zombie clones reached.
+   */
+  public void findStabTargets(double x, double z, double reach, double angle,
+          double halfAngle, ArrayList<Zombie> hitZombies,
+          ArrayList<ZombieClone> hitClones)
+  {
+    hitZombies.clear();
+    hitClones.clear();
+    double dirX = Math.sin(Math.toRadians(angle));
+    double dirZ = Math.cos(Math.toRadians(angle));
+    double cosHalfAngle = Math.cos(Math.toRadians(halfAngle));
+    int count = collisionWorld.bodyArcHits(x, z, reach, dirX, dirZ,
+            cosHalfAngle, stabbedBodies);
+    for (int i = 0; i < count; i++)
     {
-      if (player.getBoundsInParent()
-              .intersects(zombie.zombieCylinder.getBoundsInParent()))
-      {
-        return zombie;
-      }
+      hitZombies.add(zombies.get(stabbedBodies[i]));
+    }
+    count = zombieCloneBodies.arcHits(x, z, reach, dirX, dirZ, cosHalfAngle,
+            stabbedBodies);
+    for (int i = 0; i < count; i++)
+    {
+      hitClones.add(zombieClones.get(stabbedBodies[i]));
     }
-    return null;
   }
 
-  public ZombieClone checkPlayerCloneCollision(Shape3D player)
+  /**
+   * Copies the positions of the zombies and the zombie clones into the
+   * collision world and the spatial hash of the clones. Only the ones that
+   * crossed into a new square of the hash are moved between its buckets.
+   */
+  private void updateBodies()
   {
-    for (ZombieClone zombieClone : zombieClones)
+    collisionWorld.setBodyCount(zombies.size());
+    for (int i = 0; i < zombies.size(); i++)
     {
-      if (player.getBoundsInParent()
-              .intersects(zombieClone.cloneCylinder.getBoundsInParent()))
-      {
-        return zombieClone;
-      }
+      Zombie zombie = zombies.get(i);
+      collisionWorld.setBody(i, zombie.xPos, zombie.zPos, Zombie.RADIUS);
+    }
+    zombieCloneBodies.setCount(zombieClones.size());
+    for (int i = 0; i < zombieClones.size(); i++)
+    {
+      ZombieClone clone = zombieClones.get(i);
+      zombieCloneBodies.move(i, clone.xPos, clone.zPos, ZombieClone.RADIUS);
     }
-    return null;
   }
 
   /**
@@ -291,11 +367,26 @@ public class EntityManager
     return spawnChance;
   }
 
+  /**
+   * Updates the zombies' paths for a frame, within the budget of the path
+   * scheduler. This is called once for each frame that is drawn, after its
+   * ticks, and not from tick, so that catching up on late ticks doesn't
+   * also multiply the time spent planning.
+   *
+   * @param ticks
+   *          How many ticks were taken for the frame.
+   */
+  public void planPaths(int ticks)
+  {
+    pathScheduler.run(zombies, ticks);
+  }
+
   /**
    * This Method updates all the values of all entities
    */
   public void tick()
   {
+    updateBodies();
     player.tick();
 
     for (Zombie zombie : zombies)
@@ -307,6 +398,7 @@ public class EntityManager
         startMasterZombie();
       }
     }
+    deliverPaths();
 
     ZombieHouse3d.tickCount++;
 
@@ -362,6 +454,31 @@ public class EntityManager
     }
   }
 
+  /**
+   * Draws the entities for a frame, between where the last two ticks put
+   * them. Only the meshes, the camera and the light are moved; the positions
+   * the game plays by stay where the last tick left them.
+   *
+   * @param alpha
+   *          How far the frame is into the next tick, from 0 to 1.
+   */
+  public void render(double alpha)
+  {
+    player.render(alpha);
+    for (Zombie zombie : zombies)
+    {
+      zombie.render(alpha);
+    }
+    for (PlayerClone playerClone : playerClones)
+    {
+      playerClone.render(alpha);
+    }
+    for (ZombieClone zombieClone : zombieClones)
+    {
+      zombieClone.render(alpha);
+    }
+  }
+
   /**
    * @author Jeffrey McCall This is a class that extends Thread and is used to
    *         keep track of the decision rate of the zombies, which is 2 seconds.
@@ -394,11 +511,11 @@ public class EntityManager
         {
           if (!zombie.isMasterZombie)
           {
-            if (zombie.goingAfterPlayer.get())
+            if (zombie.isChasing())
             {
               zombie.findNewPath.set(true);
             }
-            if (zombie.randomWalk && !zombie.goingAfterPlayer.get())
+            if (zombie.randomWalk && !zombie.isChasing())
             {
               zombie.angle = zombie.rand.nextInt(360);
             }
@@ -454,6 +571,89 @@ public class EntityManager
     }
   }
 
+  /**
+   * Hands the paths the planning service has finished since the last tick to
+   * the zombies that asked for them. This is called from the game loop, so
+   * the zombies are only ever changed on the animation thread.
+   */
+  public void deliverPaths()
+  {
+    PathResult<Zombie> result;
+    while ((result = planningService.poll()) != null)
+    {
+      result.request.owner.calcPath.receivePath(result);
+    }
+  }
+
+  /**
+   * Gets the flow field rooted at the player's tile and the tiles of every
+   * active player clone, which every zombie chasing the player reads its
+   * distance and heading from. Each zombie is led to whichever of them is
+   * nearest to it. The field is only recomputed when one of them has moved
+   * to a different tile since the last call, so one search is done per move
+   * instead of one per zombie per target per tick. A new field is made
+   * whenever a new graph has been built.
+   *
+   * @param playerCell
+   *          The cell of the navigation grid the player is standing on.
+   * @return The flow field rooted at the player and the clones.
+   */
+  public FlowField getPlayerField(int playerCell)
+  {
+    NavGrid grid = TileGraph.navGrid;
+    if (playerField == null || playerField.grid != grid)
+    {
+      playerField = new FlowField(grid, PLAYER_FIELD_RADIUS);
+    }
+    if (targetCells.length < playerClones.size() + 1)
+    {
+      targetCells = new int[playerClones.size() + 1];
+    }
+    int targets = 0;
+    targetCells[targets++] = playerCell;
+    for (PlayerClone clone : playerClones)
+    {
+      if (clone.isActive())
+      {
+        targetCells[targets++] = grid.cellAt(clone.xPos, clone.zPos);
+      }
+    }
+    playerField.setRoots(targetCells, targets);
+    return playerField;
+  }
+
+  /**
+   * Gets the table of tiles the chasing zombies have reserved for the next
+   * few steps, which they plan around so that they don't crowd into the same
+   * tiles. A new table is made whenever a new graph has been built.
+   *
+   * @return The reservation table for the current graph.
+   */
+  public ReservationTable getReservations()
+  {
+    NavGrid grid = TileGraph.navGrid;
+    if (reservations == null || reservations.grid != grid)
+    {
+      reservations = new ReservationTable(grid,
+          CooperativeSearch.DEFAULT_WINDOW);
+      cooperativeSearch = new CooperativeSearch(grid);
+    }
+    return reservations;
+  }
+
+  /**
+   * Gets the search the chasing zombies use to plan around each other's
+   * reservations. It is shared, since zombies are only planned for on the
+   * animation thread.
+   *
+   * @return The cooperative search for the current graph.
+   */
+  public CooperativeSearch getCooperativeSearch()
+  {
+    getReservations();
+    return cooperativeSearch;
+  }
+
   /**
    * @param zombieHouse ZombieHouse3d Object
    *                    <p/>
@@ -517,5 +717,9 @@ public class EntityManager
       zombie.dispose();
     }
     zombies.clear();
+    playerField = null;
+    reservations = null;
+    cooperativeSearch = null;
+    planningService.shutdown();
   }
 }
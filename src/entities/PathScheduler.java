@@ -0,0 +1,139 @@
+package entities;
+
+import java.util.ArrayList;
+
+/**
+ * Spreads the zombies' path updates out over frames so that the time spent
+ * finding paths each frame doesn't grow with the number of zombies. Zombies
+ * ask for a new path from their tick methods, and the requests are served
+ * once per frame in this order:
+ * <ol>
+ * <li>the master zombie,</li>
+ * <li>the zombies that were closest to the player after their last update,</li>
+ * <li>the rest, in turn, picking up where the last frame left off, until the
+ * time budget for the frame is used up. At least one of them is served every
+ * frame.</li>
+ * </ol>
+ * A zombie that isn't served keeps the heading and distance from its last
+ * path until its turn comes.
+ */
+public class PathScheduler
+{
+  // How many of the zombies closest to the player are updated every frame.
+  public static final int NEAREST_EVERY_FRAME = 3;
+
+  private final long budgetNanos;
+  private int cursor = 0;
+  private int frame = 0;
+  private int tick = 0;
+  private int plannedLastFrame = 0;
+
+  /**
+   * @param budgetMillis
+   *          How many milliseconds each frame may spend on the zombies that
+   *          aren't updated every frame.
+   */
+  public PathScheduler(double budgetMillis)
+  {
+    budgetNanos = (long) (budgetMillis * 1000000);
+  }
+
+  /**
+   * Serves the path requests for this frame. This is called once for each
+   * frame that is drawn, however many game ticks were taken for it, so a
+   * frame that has fallen behind doesn't plan more than any other.
+   *
+   * @param zombies
+   *          All of the zombies in the game.
+   * @param ticks
+   *          How many game ticks were taken since the last call.
+   */
+  public void run(ArrayList<Zombie> zombies, int ticks)
+  {
+    frame++;
+    tick += ticks;
+    plannedLastFrame = 0;
+    int count = zombies.size();
+    for (int i = 0; i < count; i++)
+    {
+      Zombie zombie = zombies.get(i);
+      if (zombie.isMasterZombie)
+      {
+        plan(zombie);
+      }
+    }
+    for (int n = 0; n < NEAREST_EVERY_FRAME; n++)
+    {
+      Zombie nearest = null;
+      for (int i = 0; i < count; i++)
+      {
+        Zombie zombie = zombies.get(i);
+        if (isWaiting(zombie) && (nearest == null
+            || zombie.calcPath.distanceToPlayer < nearest.calcPath.distanceToPlayer))
+        {
+          nearest = zombie;
+        }
+      }
+      if (nearest == null)
+      {
+        break;
+      }
+      plan(nearest);
+    }
+    // The budget only covers the rest, and at least one of them is served
+    // even if it is already spent, so every zombie's turn comes around.
+    long start = System.nanoTime();
+    boolean served = false;
+    for (int i = 0; i < count; i++)
+    {
+      if (served && System.nanoTime() - start >= budgetNanos)
+      {
+        break;
+      }
+      if (cursor >= count)
+      {
+        cursor = 0;
+      }
+      Zombie zombie = zombies.get(cursor++);
+      if (isWaiting(zombie))
+      {
+        plan(zombie);
+        served = true;
+      }
+    }
+  }
+
+  private boolean isWaiting(Zombie zombie)
+  {
+    return zombie.pathTile != null && zombie.plannedFrame != frame;
+  }
+
+  private void plan(Zombie zombie)
+  {
+    if (!isWaiting(zombie))
+    {
+      return;
+    }
+    zombie.findPathToPlayer(zombie.pathTile);
+    zombie.pathTile = null;
+    zombie.plannedFrame = frame;
+    plannedLastFrame++;
+  }
+
+  /**
+   * @return The number of game ticks that have been taken up to the last
+   *         frame that was run.
+   */
+  public int getTick()
+  {
+    return tick;
+  }
+
+  /**
+   * @return The number of zombies whose paths were updated in the last frame.
+   */
+  public int getPlannedLastFrame()
+  {
+    return plannedLastFrame;
+  }
+}
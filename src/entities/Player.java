@@ -11,7 +11,6 @@ import graphing.TileGraph;
 import javafx.scene.Node;
 import javafx.scene.PerspectiveCamera;
 import javafx.scene.PointLight;
-import javafx.scene.shape.Box;
 import javafx.scene.shape.Cylinder;
 import javafx.scene.transform.Rotate;
 import levels.Tile;
@@ -51,6 +50,16 @@ public class Player extends Creature
   double offSetX = 0;
   double offSetZ = 0;
   public double radius = .25;
+  // Where the last move through the collision world left the player.
+  private double[] sweep = new double[4];
+  // What the last stab reached.
+  private ArrayList<Zombie> stabbedZombies = new ArrayList<>();
+  private ArrayList<ZombieClone> stabbedClones = new ArrayList<>();
+  // Where the player was at the start of the last tick, for drawing the
+  // player between ticks.
+  private double tickStartX;
+  private double tickStartZ;
+  private double tickStartAngle;
 
   //atomic booleans:
   /*
@@ -132,6 +141,9 @@ public class Player extends Creature
     boundingCircle.setTranslateZ(camera.getTranslateZ());
     lastX = camera.getTranslateX();
     lastZ = camera.getTranslateZ();
+    tickStartX = x;
+    tickStartZ = z;
+    tickStartAngle = this.angle;
   }
 
   /**
@@ -180,48 +192,10 @@ public class Player extends Creature
     if (angle < 0) angle += 360;
     if (angle > 360) angle -= 360; // To keep the angle value within 0 - 360
 
-    Cylinder tempX = new Cylinder(boundingCircle.getRadius(), boundingCircle.getHeight());
-    Cylinder tempZ = new Cylinder(boundingCircle.getRadius(), boundingCircle.getHeight());
-
-    double movementX = boundingCircle.getTranslateX();
-    double movementZ = boundingCircle.getTranslateZ();
-
-    movementX += (velocity * Math.sin(angle * (Math.PI / 180)));
-    movementX += (strafeVelocity * Math.sin(angle * (Math.PI / 180) - Math.PI / 2));
-    movementZ += (velocity * Math.cos(angle * (Math.PI / 180)));
-    movementZ += (strafeVelocity * Math.cos(angle * (Math.PI / 180) - Math.PI / 2));
-
-    tempX.setTranslateX(movementX);
-    tempX.setTranslateZ(boundingCircle.getTranslateZ());
-
-    tempZ.setTranslateX(boundingCircle.getTranslateX());
-    tempZ.setTranslateZ(movementZ);
-
-    Box collisionX = entityManager.getWallCollision(tempX);
-    Box collisionZ = entityManager.getWallCollision(tempZ);
-
-    if (turnLeft)
-    {
-      this.angle -= Attributes.Player_Rotate_sensitivity;
-      this.camera.setRotate(this.angle);
-    }
-    if (turnRight)
-    {
-      this.angle += Attributes.Player_Rotate_sensitivity;
-      this.camera.setRotate(this.angle);
-    }
-
-    lastX = camera.getTranslateX();
-    lastZ = camera.getTranslateZ();
-
-    if (collisionX == null)
-    {
-      camera.setTranslateX(movementX);
-    }
-    if (collisionZ == null)
-    {
-      camera.setTranslateZ(movementZ);
-    }
+    tickStartX = xPos;
+    tickStartZ = zPos;
+    tickStartAngle = angle;
+    integrate();
 
     if (isStabbing.get()) // Player is in the state of stabbing for 20 ticks
     {
@@ -232,66 +206,39 @@ public class Player extends Creature
       }
     }
 
-    boundingCircle.setTranslateX(camera.getTranslateX());
-    boundingCircle.setTranslateZ(camera.getTranslateZ());
+    boundingCircle.setTranslateX(xPos);
+    boundingCircle.setTranslateZ(zPos);
 
     //Removes HP instead of instadeath
-    boundingCircle.setRadius(Attributes.Player_Stab_Reach);
-    Zombie collisionCheck = entityManager.checkPlayerCollision(boundingCircle);
-    if (collisionCheck != null)
+    // A stab reaches every zombie and zombie clone in its arc at once.
+    if (isStabbing.get() && counter >= lastDam + damPeriod)
     {
-      double xDiff = collisionCheck.xPos - xPos;
-      double zDiff = collisionCheck.zPos - zPos;
-      if (isStabbing.get() && isFacingZombie(xDiff, zDiff, angle) && counter >= lastDam + damPeriod && !collisionCheck.isDead.get())
+      entityManager.findStabTargets(xPos, zPos, Attributes.Player_Stab_Reach,
+          angle, Attributes.Player_Stab_Range, stabbedZombies, stabbedClones);
+      boolean hit = !stabbedClones.isEmpty();
+      for (Zombie zombie : stabbedZombies)
       {
-        entityManager.soundManager.playSoundClip(Sound.hits); // "tearing-flesh" by dereklieu from freesound.org
-        lastDam = counter;
-        collisionCheck.health--;
-        collisionCheck.isStunned.set(true);
-        if (!collisionCheck.isMasterZombie)
+        if (!zombie.isDead.get())
         {
-          ZombieHouse3d.root.getChildren().removeAll(collisionCheck.zombieMesh);
-          if (collisionCheck.health == 2)
-            collisionCheck.setMesh(ZombieHouse3d.hurtGhoul);
-          else if (collisionCheck.health == 1)
-            collisionCheck.setMesh(ZombieHouse3d.dyingGhoul);
-          else if (collisionCheck.health <= 0) collisionCheck.isDead.set(true);
-          ZombieHouse3d.root.getChildren().addAll(collisionCheck.zombieMesh);
+          stabZombie(zombie);
+          hit = true;
         }
-        if (collisionCheck.health <= 0) collisionCheck.isDead.set(true);
-        collisionCheck.action = Action.LOSEHEALTH;
-
-        //engage player
-        if (collisionCheck.engaged == false)
-        {
-          collisionCheck.engage(this);
-          System.out.println("Zombie " + collisionCheck.index + " is engaged!");
-        }
-        action = Action.STAB;
-
       }
-    }
-
-    //bifurcation from stabbing zombieClone -Sam
-    ZombieClone collisionCloneCheck = entityManager.checkPlayerCloneCollision(boundingCircle);
-    if (collisionCloneCheck != null)
-    {
-
-      double xDiff = collisionCloneCheck.xPos - xPos;
-      double zDiff = collisionCloneCheck.zPos - zPos;
-      if (isStabbing.get() && isFacingZombie(xDiff, zDiff, angle) && counter >= lastDam + damPeriod)
+      //bifurcation from stabbing zombieClone -Sam
+      for (ZombieClone clone : stabbedClones)
+      {
+        bifurcateZombie(clone);
+      }
+      if (hit)
       {
-        //System.out.println("Bifurcate!!");
         entityManager.soundManager.playSoundClip(Sound.hits); // "tearing-flesh" by dereklieu from freesound.org
         lastDam = counter;
-        bifurcateZombie(collisionCloneCheck);
-        //System.out.println("zomb xy: " + collisionCloneCheck.xPos + ", " + collisionCloneCheck.zPos);
-        //System.out.println("zombClone xy: " + zomb.xPos + ", " + zomb.zPos);
       }
     }
 
     boundingCircle.setRadius(radius);
-    collisionCheck = entityManager.checkPlayerCollision(boundingCircle);
+    Zombie collisionCheck = entityManager.checkPlayerCollision(xPos, zPos,
+        radius);
     if (collisionCheck != null && counter >= lastDam + damPeriod && !collisionCheck.isStunned.get() && !collisionCheck.isDead.get())
     {
       entityManager.soundManager.playSoundClip(Sound.pain);
@@ -310,7 +257,8 @@ public class Player extends Creature
     }
 
     //bifurcate when touching zombieClone
-    collisionCloneCheck = entityManager.checkPlayerCloneCollision(boundingCircle);
+    ZombieClone collisionCloneCheck = entityManager.checkPlayerCloneCollision(
+        xPos, zPos, radius);
     if (collisionCloneCheck != null && counter >= lastDam + damPeriod)
     {
       entityManager.soundManager.playSoundClip(Sound.hits); // "tearing-flesh" by dereklieu from freesound.org
@@ -319,14 +267,9 @@ public class Player extends Creature
     }
 
     //checking for exit collision
-    for (Box box : entityManager.zombieHouse.exits)
-    {
-      if (box.getBoundsInParent().intersects(boundingCircle.getBoundsInParent()))
-      {
-        foundExit.set(true);
-        System.out.println("exit");
-      }
-    }
+    // The exits are triggers on their tiles, which only do anything when the
+    // player crosses onto another tile.
+    entityManager.triggerLayer.moveTo(xPos, zPos);
 
     if (shiftPressed.get() && !staminaOut.get())
     {
@@ -344,15 +287,66 @@ public class Player extends Creature
     }
 
     updateDistance();
-    light.setTranslateX(camera.getTranslateX());
-    light.setTranslateZ(camera.getTranslateZ());
-    light.setRotate(camera.getRotate() - 180);
-    xPos = camera.getTranslateX();
-    zPos = camera.getTranslateZ();
 
     addPointTime(action);
   }
 
+  /**
+   * Moves the camera and the light to where the player is drawn for a frame,
+   * part of the way from where the last tick started to where it left the
+   * player. The camera is turned the short way around.
+   *
+   * @param alpha How far the frame is into the next tick, from 0 to 1.
+   */
+  public void render(double alpha)
+  {
+    double x = tickStartX + (xPos - tickStartX) * alpha;
+    double z = tickStartZ + (zPos - tickStartZ) * alpha;
+    double turn = angle - tickStartAngle;
+    turn -= 360 * Math.round(turn / 360);
+    double drawnAngle = tickStartAngle + turn * alpha;
+    camera.setTranslateX(x);
+    camera.setTranslateZ(z);
+    camera.setRotate(drawnAngle);
+    light.setTranslateX(x);
+    light.setTranslateZ(z);
+    light.setRotate(drawnAngle - 180);
+  }
+
+  /**
+   * Moves the player for one tick on its position alone. Walking, sprinting
+   * and strafing are added up into one move, which goes through the walls of
+   * the collision world in a single pass and slides along any wall it runs
+   * into. The turn is made after the move, the same as the keys have always
+   * worked. The camera, light and bounding circle are then set from xPos,
+   * zPos and angle once.
+   */
+  private void integrate()
+  {
+    double heading = angle * (Math.PI / 180);
+    double sin = Math.sin(heading);
+    double cos = Math.cos(heading);
+    // Strafing is a quarter turn to the left of the heading.
+    double moveX = velocity * sin - strafeVelocity * cos;
+    double moveZ = velocity * cos + strafeVelocity * sin;
+
+    lastX = xPos;
+    lastZ = zPos;
+    entityManager.collisionWorld.move(xPos, zPos, radius, moveX, moveZ,
+        sweep);
+    xPos = sweep[0];
+    zPos = sweep[1];
+
+    if (turnLeft)
+    {
+      angle -= Attributes.Player_Rotate_sensitivity;
+    }
+    if (turnRight)
+    {
+      angle += Attributes.Player_Rotate_sensitivity;
+    }
+  }
+
   /*
   adds PointTime (object containing current position, global tick and action(if any)) to the
   LinkedList array of pointTimes.
@@ -374,15 +368,9 @@ public class Player extends Creature
   public GraphNode getCurrentNode()
   {
     GraphNode currentNode = null;
-    Tile currentTile = null;
     double currentX = boundingCircle.getTranslateX();
     double currentZ = boundingCircle.getTranslateZ();
-    currentTile = entityManager.zombieHouse.gameBoard[(int) currentZ][(int) currentX];
-    if (TileGraph.tileGraph.containsKey(currentTile))
-    {
-      currentNode = TileGraph.tileGraph.get(currentTile);
-      return currentNode;
-    }
+    currentNode = TileGraph.getNode((int) currentZ, (int) currentX);
     return currentNode;
   }
 
@@ -397,15 +385,9 @@ public class Player extends Creature
   public GraphNode getCurrent2dNode()
   {
     GraphNode currentNode = null;
-    Tile currentTile = null;
     double currentX = xPos / ZombieBoardRenderer.cellSize;
     double currentY = yPos / ZombieBoardRenderer.cellSize;
-    currentTile = ZombieBoardRenderer.gameBoard[(int) currentY][(int) currentX];
-    if (TileGraph.tileGraph.containsKey(currentTile))
-    {
-      currentNode = TileGraph.tileGraph.get(currentTile);
-      return currentNode;
-    }
+    currentNode = TileGraph.getNode((int) currentY, (int) currentX);
     return currentNode;
   }
 
@@ -451,8 +433,8 @@ public class Player extends Creature
   @Override
   public double calculateDistance()
   {
-    double xDist = camera.getTranslateX() - lastX;
-    double zDist = camera.getTranslateZ() - lastZ;
+    double xDist = xPos - lastX;
+    double zDist = zPos - lastZ;
     return Math.sqrt((xDist * xDist) + (zDist * zDist));
   }
 
@@ -541,30 +523,34 @@ public class Player extends Creature
   }
 
   /**
-   * @param xDiff     The zombie's xPos minus the player's xPos
-   * @param zDiff     The zombie's zPos minus the player's zPos
-   * @param yourAngle The camera's angle
-   * @return True if within range, false if out of range
-   * @author Robin Campos
-   * Returns true if the player is facing a zombie within the stab range (angle).
-   * Used when isStabbing is true and the player is within the collision range of a zombie.
+   * Takes a point of health from a zombie the player stabbed, stuns it, and
+   * has it go after the player.
+   *
+   * @param zombie The zombie that was stabbed.
    */
-  private boolean isFacingZombie(double xDiff, double zDiff, double yourAngle)
+  private void stabZombie(Zombie zombie)
   {
-    double radToDeg = 180 / Math.PI;
-    double range = Attributes.Player_Stab_Range;
-    double angleAttacked = 0;
-    if (xDiff == 0 && zDiff > 0) angleAttacked = 0;
-    else if (xDiff == 0 && zDiff < 0) angleAttacked = 180;
-    else if (xDiff > 0) angleAttacked = (90 - (radToDeg * Math.atan(zDiff / xDiff)));
-    else if (xDiff < 0) angleAttacked = (270 - (radToDeg * Math.atan(zDiff / xDiff)));
-
-    if ((yourAngle + range) > angleAttacked && (yourAngle - range) < angleAttacked) return true;
-    yourAngle += 360;
-    if ((yourAngle + range) > angleAttacked && (yourAngle - range) < angleAttacked) return true;
-    angleAttacked += 720;
-    if ((yourAngle + range) > angleAttacked && (yourAngle - range) < angleAttacked) return true;
-    return false;
+    zombie.health--;
+    zombie.isStunned.set(true);
+    if (!zombie.isMasterZombie)
+    {
+      ZombieHouse3d.root.getChildren().removeAll(zombie.zombieMesh);
+      if (zombie.health == 2)
+        zombie.setMesh(ZombieHouse3d.hurtGhoul);
+      else if (zombie.health == 1)
+        zombie.setMesh(ZombieHouse3d.dyingGhoul);
+      else if (zombie.health <= 0) zombie.isDead.set(true);
+      ZombieHouse3d.root.getChildren().addAll(zombie.zombieMesh);
+    }
+    if (zombie.health <= 0) zombie.isDead.set(true);
+    zombie.action = Action.LOSEHEALTH;
+
+    //engage player
+    if (zombie.engaged == false)
+    {
+      zombie.engage(this);
+    }
+    action = Action.STAB;
   }
 
 }
\ No newline at end of file
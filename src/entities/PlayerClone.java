@@ -23,6 +23,9 @@ public class PlayerClone extends Player
 
   private double lastxPos;
   private double lastzPos;
+  // False until the clone has been placed by a tick, so that it isn't drawn
+  // coming from where it was before it started.
+  private boolean placed = false;
   private boolean active = false;
   public Node[] cloneMesh;
 
@@ -71,11 +74,15 @@ public class PlayerClone extends Player
         xPos = actionSequence.get(currentTick).getXPos();
         zPos = actionSequence.get(currentTick).getZPos();
         currentAction = actionSequence.get(currentTick).getAction();
+        if (!placed)
+        {
+          lastxPos = xPos;
+          lastzPos = zPos;
+          placed = true;
+        }
 
         for (int i = 0; i < cloneMesh.length; i++)
         {
-          cloneMesh[i].setTranslateZ(zPos);
-          cloneMesh[i].setTranslateX(xPos);
           cloneMesh[i].setRotate(actionSequence.get(currentTick).getAngle() + 180);
         }
 
@@ -113,11 +120,42 @@ public class PlayerClone extends Player
     }
   }
 
+  /**
+   * Moves the clone's meshes to where it is drawn for a frame, part of the
+   * way between the steps of the last two ticks it replayed.
+   *
+   * @param alpha
+   *          How far the frame is into the next tick, from 0 to 1.
+   */
+  public void render(double alpha)
+  {
+    if (!active || !placed || cloneMesh == null)
+    {
+      return;
+    }
+    double x = lastxPos + (xPos - lastxPos) * alpha;
+    double z = lastzPos + (zPos - lastzPos) * alpha;
+    for (int i = 0; i < cloneMesh.length; i++)
+    {
+      cloneMesh[i].setTranslateX(x);
+      cloneMesh[i].setTranslateZ(z);
+    }
+  }
+
   public void setActive(boolean active)
   {
     this.active = active;
   }
 
+  /**
+   * @return True if the clone is replaying its moves, and so is somewhere
+   *         on the board for zombies to go after.
+   */
+  public boolean isActive()
+  {
+    return active;
+  }
+
   public void setMesh(Node[] cloneMesh)
   {
     this.cloneMesh = cloneMesh;
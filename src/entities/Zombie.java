@@ -5,9 +5,21 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import game_engine.Attributes;
 import game_engine.ZombieHouse3d;
+import graphing.CooperativeSearch;
+import graphing.FlowField;
 import graphing.GraphNode;
 import graphing.Heading;
-import graphing.NodeComparator;
+import graphing.JumpPointSearch;
+import graphing.NavMesh;
+import graphing.NavGrid;
+import graphing.PathPlanner;
+import graphing.PathRequest;
+import graphing.PathResult;
+import graphing.PathSmoother;
+import graphing.PlannerRegistry;
+import graphing.PlanningService;
+import graphing.ReservationTable;
+import graphing.RoomGraph;
 import graphing.TileGraph;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
@@ -15,6 +27,7 @@ import javafx.scene.shape.Circle;
 import javafx.scene.shape.Cylinder;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.transform.Rotate;
+import levels.HouseLayout;
 import levels.Tile;
 import sounds.Sound;
 import utilities.ZombieBoardRenderer;
@@ -58,6 +71,9 @@ public class Zombie extends Creature
   public AtomicBoolean collisionJustDetected = new AtomicBoolean(false);
   public AtomicBoolean playerDetected = new AtomicBoolean(false);
   public AtomicBoolean goingAfterPlayer = new AtomicBoolean(false);
+  // Set instead of goingAfterPlayer while the zombie goes after a player
+  // clone it has smelled, so that a clone doesn't wake the master zombie.
+  public AtomicBoolean chasingClone = new AtomicBoolean(false);
   public AtomicBoolean findNewPath = new AtomicBoolean(false);
   public AtomicBoolean masterZombieChasePlayer = new AtomicBoolean(false);
   public AtomicBoolean isDead = new AtomicBoolean(false);
@@ -66,13 +82,32 @@ public class Zombie extends Creature
   public int col;
   public int row;
   private double prevAngle = 0;
+  // Set when the zombie's last move ran into a wall that stopped it, and
+  // where the move left it.
+  private boolean blockedByWall = false;
+  private double[] sweep = new double[4];
+  // The way away from the nearest wall, for picking a new angle. This is
+  // filled on the decision thread, so it is kept apart from sweep.
+  private double[] awayFromWall = new double[2];
+  // How many random angles are passed over for heading back into a wall
+  // before one is taken anyway.
+  private static final int WALL_TURN_TRIES = 8;
   public int stunTickCounter = 0;
+  // The radius of the 3D zombie, for its cylinder and for its body in the
+  // collision world.
+  public static final double RADIUS = .2;
   public Cylinder zombieCylinder = null;
   public Cylinder zombie = null;
   public Node[] zombieMesh = null;
   public Rectangle collisionBox;
   public CalculatePath calcPath = new CalculatePath();
+  // The tile the zombie was on when it last asked the PathScheduler for a
+  // path, or null if it isn't waiting for one.
+  Tile pathTile = null;
+  int plannedFrame = 0;
   public static Cylinder boundingCircle = null;
+  // Hands out the ids that zombies reserve tiles under.
+  private static int reservationIds = 0;
   double lastAngle = 0;
   private Heading zombieHeading;
   double lastX;
@@ -185,11 +220,12 @@ public class Zombie extends Creature
   public void create3DZombie(int row, int col, int cellSize)
   {
     Cylinder cylinder = null;
-    cylinder = new Cylinder(.2, 1);
+    cylinder = new Cylinder(RADIUS, 1);
     cylinder.setTranslateX(xPos * cellSize);
     cylinder.setTranslateZ(zPos * cellSize);
     zombieCylinder = cylinder;
-
+    pastX = cylinder.getTranslateX();
+    pastZ = cylinder.getTranslateZ();
   }
 
   /**
@@ -203,10 +239,13 @@ public class Zombie extends Creature
   {
     double cosTransform = Math.cos(angle * (Math.PI / 180));
     double sinTransform = Math.sin(angle * (Math.PI / 180));
-    double movementAmountY = zombieCirc.getCenterY()
-        + (zombieWalkingSpeed * (cosTransform));
-    double movementAmountX = zombieCirc.getCenterX()
-        + (zombieWalkingSpeed * (sinTransform));
+    double cellSize = ZombieBoardRenderer.cellSize;
+    slideAlongWalls(zombieCirc.getCenterX() / cellSize,
+        zombieCirc.getCenterY() / cellSize, zombieCirc.getRadius() / cellSize,
+        zombieWalkingSpeed * sinTransform / cellSize,
+        zombieWalkingSpeed * cosTransform / cellSize);
+    double movementAmountY = sweep[1] * cellSize;
+    double movementAmountX = sweep[0] * cellSize;
     if (movementAmountX > 0 && movementAmountY > 0
         && movementAmountX < ZombieBoardRenderer.boardWidth
             * ZombieBoardRenderer.cellSize
@@ -232,27 +271,89 @@ public class Zombie extends Creature
 
     double cosTransform = Math.cos(angle * (Math.PI / 180));
     double sinTransform = Math.sin(angle * (Math.PI / 180));
-    double movementAmountZ = zombieCylinder.getTranslateZ()
-        + (zombieWalkingSpeed * (cosTransform));
-    double movementAmountX = zombieCylinder.getTranslateX()
-        + (zombieWalkingSpeed * (sinTransform));
+    slideAlongWalls(zombieCylinder.getTranslateX(),
+        zombieCylinder.getTranslateZ(), RADIUS,
+        zombieWalkingSpeed * sinTransform, zombieWalkingSpeed * cosTransform);
+    double movementAmountZ = sweep[1];
+    double movementAmountX = sweep[0];
     if (movementAmountX > 0 && movementAmountZ > 0
         && movementAmountX < entityManager.zombieHouse.boardWidth
         && movementAmountZ < entityManager.zombieHouse.boardHeight)
     {
       zombieCylinder.setTranslateZ(movementAmountZ);
       zombieCylinder.setTranslateX(movementAmountX);
-      double angleToPlayer = getAngleToPlayer();
+      // A zombie going after a clone faces the way it walks; the others turn
+      // to face the player.
+      double facing = chasingClone.get() ? angle - 180 : getAngleToPlayer();
       for (int i = 0; i < zombieMesh.length; i++)
       {
-        zombieMesh[i].setTranslateZ(movementAmountZ);
-        zombieMesh[i].setTranslateX(movementAmountX);
-        zombieMesh[i].setRotate(angleToPlayer);
+        zombieMesh[i].setRotate(facing);
       }
     }
     xPos = zombieCylinder.getTranslateX();
     zPos = zombieCylinder.getTranslateZ();
   }
+  /**
+   * Moves the zombie's circle through the collision world, stopping at walls
+   * and sliding along them, and leaves where it ends up in sweep. A zombie
+   * wandering on its own is blocked by any wall it touches, so that it turns
+   * around, while a chasing zombie is only blocked if the wall stopped it
+   * from getting even half way.
+   */
+  private void slideAlongWalls(double x, double z, double radius, double dx,
+      double dz)
+  {
+    boolean touched = entityManager.collisionWorld.move(x, z, radius, dx, dz,
+        sweep);
+    double movedX = sweep[0] - x;
+    double movedZ = sweep[1] - z;
+    blockedByWall = touched && (!isChasing()
+        || 4 * (movedX * movedX + movedZ * movedZ) < dx * dx + dz * dz);
+  }
+
+  /**
+   * Pushes the zombie half of the way out of another zombie it has walked
+   * into, so that zombies chasing down the same hallway don't end up on top
+   * of each other. The other zombie is pushed the rest of the way on its own
+   * tick. The push goes through the collision world, so it never puts the
+   * zombie into a wall.
+   */
+  private void separateFromOtherZombies()
+  {
+    Zombie other = entityManager.checkZombieCollision(this);
+    if (other == null)
+    {
+      return;
+    }
+    double awayX = xPos - other.xPos;
+    double awayZ = zPos - other.zPos;
+    double distance = Math.sqrt(awayX * awayX + awayZ * awayZ);
+    // The other zombie may already have moved apart on its own tick.
+    if (distance >= 2 * RADIUS)
+    {
+      return;
+    }
+    if (distance == 0)
+    {
+      // Right on top of each other, so the one with the lower index stays
+      // put and the other backs off the way it came.
+      if (index < other.index)
+      {
+        return;
+      }
+      awayX = -Math.sin(Math.toRadians(angle));
+      awayZ = -Math.cos(Math.toRadians(angle));
+      distance = 1;
+    }
+    double push = (2 * RADIUS - distance) / 2 / distance;
+    entityManager.collisionWorld.move(xPos, zPos, RADIUS, awayX * push,
+        awayZ * push, sweep);
+    zombieCylinder.setTranslateX(sweep[0]);
+    zombieCylinder.setTranslateZ(sweep[1]);
+    xPos = sweep[0];
+    zPos = sweep[1];
+  }
+
   /**
    * Gets the angle that the zombie is moving in towards the player. This is
    * used to rotate the zombie to face the player.
@@ -320,6 +421,29 @@ public class Zombie extends Creature
     angleAdjusted.set(true);
   }
 
+  /**
+   * Looks up the way away from the wall nearest to the zombie in the
+   * collision world's distance field, which is a single read.
+   *
+   * @return True if walking at the given angle would take the zombie toward
+   *         the wall nearest to it.
+   */
+  private boolean headsIntoWall(int newAngle)
+  {
+    double x = xPos;
+    double z = zPos;
+    if (twoDBoard)
+    {
+      x = zombieCirc.getCenterX() / ZombieBoardRenderer.cellSize;
+      z = zombieCirc.getCenterY() / ZombieBoardRenderer.cellSize;
+    }
+    entityManager.collisionWorld.wallDistance.awayFromWall(x, z,
+        awayFromWall);
+    double radians = newAngle * (Math.PI / 180);
+    return Math.sin(radians) * awayFromWall[0]
+        + Math.cos(radians) * awayFromWall[1] < 0;
+  }
+
   /**
    * Pick a random direction for the zombie to travel in, then set the boolean
    * flags off so that the timer will call the code that moves the zombie
@@ -336,25 +460,26 @@ public class Zombie extends Creature
   /**
    * Pick a new random angle for the zombie after it has collided with an
    * obstacle. If the random angle chosen equals the previous angle, do not
-   * choose that one again, but pick a new one. If the zombie detects the player,
-   * select the angle towards the player to travel in.
+   * choose that one again, but pick a new one. Angles that lead back toward
+   * the nearest wall are passed over too, so the zombie turns out into the
+   * room. If the zombie detects the player, select the angle towards the
+   * player to travel in.
    */
   public void pickRandomAngle()
   {
-    if (!goingAfterPlayer.get())
+    if (!isChasing())
     {
       int newAngle = rand.nextInt(360);
-      if (newAngle != prevAngle)
+      for (int tries = 0; tries < WALL_TURN_TRIES && headsIntoWall(newAngle);
+          tries++)
       {
-        angle = newAngle;
-      } else
+        newAngle = rand.nextInt(360);
+      }
+      while (newAngle == prevAngle)
       {
-        while (newAngle == prevAngle)
-        {
-          newAngle = rand.nextInt(360);
-        }
-        angle = newAngle;
+        newAngle = rand.nextInt(360);
       }
+      angle = newAngle;
     } else
     {
       if (zombieHeading != null)
@@ -409,15 +534,27 @@ public class Zombie extends Creature
    * This method calculates the heading for the zombie to travel to go in the
    * direction of the player.
    * 
-   * @param tile1
-   *          The starting position of the zombie.
-   * @param tile2
-   *          The next position on the path towards the player.
+   * @param direction
+   *          The NavGrid direction of the first move on the path towards the
+   *          player.
    */
-  public void calculateHeadings(Tile tile1, Tile tile2)
+  public void calculateHeadings(int direction)
   {
-    Heading newHeading = new Heading(tile1, tile2);
-    zombieHeading = newHeading;
+    zombieHeading = Heading.forDirection(direction);
+  }
+
+  /**
+   * This method calculates the heading for the zombie to walk straight along
+   * a line toward a waypoint on its path.
+   * 
+   * @param dx
+   *          How far the waypoint is from the zombie along x.
+   * @param dz
+   *          How far the waypoint is from the zombie along z.
+   */
+  public void calculateHeadings(double dx, double dz)
+  {
+    zombieHeading = Heading.forLine(dx, dz);
   }
   
   /**
@@ -446,16 +583,38 @@ public class Zombie extends Creature
     }
   }
 
+  /**
+   * Moves the zombie's meshes to where it is drawn for a frame, part of the
+   * way from where the last tick started to where it left the zombie's
+   * cylinder.
+   *
+   * @param alpha
+   *          How far the frame is into the next tick, from 0 to 1.
+   */
+  public void render(double alpha)
+  {
+    if (zombieMesh == null || zombieCylinder == null)
+    {
+      return;
+    }
+    double x = pastX + (zombieCylinder.getTranslateX() - pastX) * alpha;
+    double z = pastZ + (zombieCylinder.getTranslateZ() - pastZ) * alpha;
+    for (int i = 0; i < zombieMesh.length; i++)
+    {
+      zombieMesh[i].setTranslateX(x);
+      zombieMesh[i].setTranslateZ(z);
+    }
+  }
+
   public Player setFollowing(Player following) {
     return following;
   }
 
   /**
-   * This method is called every time the animation time is called. A collision
-   * is checked for. If the zombie has collided with an obstacle, while the
-   * zombie is collided with that obstacle, move the zombie in the opposite
-   * direction out of that obstacle. If there is no collision, simply keep
-   * moving the zombie in the appropriate direction. Also, get the current
+   * This method is called every time the animation time is called. The
+   * zombie's moves slide along the walls instead of going into them. If its
+   * last move was blocked by a wall, the zombie is stopped and turned around.
+   * Otherwise, simply keep moving the zombie in the appropriate direction. Also, get the current
    * position of the zombie for purposes of pathfinding. Check to see where the
    * zombie is in relation to the center of the tile, and adjust accordingly to
    * keep the zombie centered as it moves toward the player. This is to ensure
@@ -486,51 +645,43 @@ public class Zombie extends Creature
         stunTickCounter = 0;
       }
     }
-    if (entityManager.getWallCollision(zombieCylinder) != null
-        && !angleAdjusted.get())
+    // The zombie's moves stop short of the walls, so it never has to be
+    // pushed back out of one; it only turns around when a wall blocked it.
+    if (blockedByWall && !angleAdjusted.get())
     {
+      blockedByWall = false;
       if (!collisionJustDetected.get())
       {
         collisionDetected.set(true);
         collisionJustDetected.set(true);
         stopThreeDZombie();
         adjustAngle();
-        // Move the zombie out of the bounds of the obstacle.
-        if (goingAfterPlayer.get())
+        if (isChasing())
         {
-          while (entityManager.getWallCollision(zombieCylinder) != null)
-          {
-            moveThreeDZombie(angle, zombieWalkingSpeed, zombieCylinder);
-          }
           double currentX = zombieCylinder.getTranslateX();
           double currentZ = zombieCylinder.getTranslateZ();
           checkForCornerTile(
               entityManager.zombieHouse.gameBoard[(int) Math.floor(currentZ)][(int) Math
                   .floor(currentX)]);
-        } else
-        {
-          while (entityManager.getWallCollision(zombieCylinder) != null)
-          {
-            moveThreeDZombie(angle, zombieWalkingSpeed, zombieCylinder);
-          }
         }
       }
     } else if (!collisionDetected.get())
     {
-      if (!goingAfterPlayer.get() && !isMasterZombie)
+      if (!isChasing() && !isMasterZombie)
       {
         moveThreeDZombie(angle, zombieWalkingSpeed, zombieCylinder);
-      } else if (!isMasterZombie && goingAfterPlayer.get())
+      } else if (!isMasterZombie && isChasing())
       {
         moveTowardPlayer(zombieWalkingSpeed);
-      } else if (isMasterZombie && !goingAfterPlayer.get())
+      } else if (isMasterZombie && !isChasing())
       {
         moveThreeDZombie(angle, masterZombieSpeed, zombieCylinder);
-      } else if (isMasterZombie && goingAfterPlayer.get())
+      } else if (isMasterZombie && isChasing())
        {
          moveTowardPlayer(masterZombieSpeed);
        }
     }
+    separateFromOtherZombies();
     double currentX = zombieCylinder.getTranslateX();
     double currentZ = zombieCylinder.getTranslateZ();
     if (angle == 180)
@@ -614,7 +765,7 @@ public class Zombie extends Creature
       currentZ--;
     }
     Tile currentTile = entityManager.zombieHouse.gameBoard[(int) currentZ][(int) currentX];
-    findPathToPlayer(currentTile);
+    requestPath(currentTile);
     updateDistance();
 
     addPointTime(action);
@@ -627,47 +778,37 @@ public class Zombie extends Creature
    */
   public void tick2d()
   {
-    if (entityManager.checkTwoD(zombieCirc) && !angleAdjusted.get())
+    if (blockedByWall && !angleAdjusted.get())
     {
+      blockedByWall = false;
       if (!collisionJustDetected.get())
       {
         collisionDetected.set(true);
         collisionJustDetected.set(true);
         stopThreeDZombie();
         adjustAngle();
-        // Move the zombie out of the bounds of the obstacle.
-        if (goingAfterPlayer.get())
+        if (isChasing())
         {
-          while (entityManager.checkTwoD(zombieCirc))
-          {
-            moveTwoDZombie(angle, twoDSpeed, zombieCirc);
-          }
           double currentXVal = zombieCirc.getCenterX()
               / ZombieBoardRenderer.cellSize;
           double currentZVal = zombieCirc.getCenterY()
               / ZombieBoardRenderer.cellSize;
           checkForCornerTile(
               ZombieBoardRenderer.gameBoard[(int) currentZVal][(int) currentXVal]);
-        } else
-        {
-          while (entityManager.checkTwoD(zombieCirc))
-          {
-            moveTwoDZombie(angle, twoDSpeed, zombieCirc);
-          }
         }
       }
     } else if (!collisionDetected.get())
     {
-      if (!goingAfterPlayer.get() && !isMasterZombie)
+      if (!isChasing() && !isMasterZombie)
       {
         moveTwoDZombie(angle, twoDSpeed, zombieCirc);
-      } else if (!isMasterZombie && goingAfterPlayer.get())
+      } else if (!isMasterZombie && isChasing())
       {
         moveTowardPlayerTwoD(twoDSpeed);
-      } else if (isMasterZombie && !goingAfterPlayer.get())
+      } else if (isMasterZombie && !isChasing())
       {
         moveTwoDZombie(angle, masterZombie2dSpeed, zombieCirc);
-      } else if (isMasterZombie && goingAfterPlayer.get())
+      } else if (isMasterZombie && isChasing())
       {
         moveTowardPlayerTwoD(masterZombie2dSpeed);
       }
@@ -758,23 +899,40 @@ public class Zombie extends Creature
       currentY--;
     }
     Tile currentTile = ZombieBoardRenderer.gameBoard[(int) currentY][(int) currentX];
-    findPathToPlayer(currentTile);
+    requestPath(currentTile);
+  }
+  /**
+   * Asks for the path to the player to be updated. The PathScheduler decides
+   * when that happens; until then the zombie keeps following its last path.
+   *
+   * @param currentTile
+   *          The current tile where the zombie is.
+   */
+  public void requestPath(Tile currentTile)
+  {
+    pathTile = currentTile;
   }
   /**
    * This method checks to see that the current tile where the zombie is located
    * is in the tile graph. If so, the player position is gotten, and the
    * appropriate methods are called to find the shortest path to the player.
    * Only the zombies that are within a Manhattan distance of 20 to the player
-   * call the pathfinding method.
+   * look for a path. Zombies following the player read their path from the
+   * flow field shared through the EntityManager, and only do a search of
+   * their own when following someone else or when the master zombie is
+   * outside of the field. Zombies close enough to smell the player plan
+   * their next few steps around each other as well. No path is looked for
+   * when the distances between the rooms of the level already show that the
+   * player is too far away to smell.
    * 
    * @param currentTile
    *          The current tile where the zombie is.
    */
   public void findPathToPlayer(Tile currentTile)
   {
-    if (TileGraph.tileGraph.containsKey(currentTile))
+    GraphNode zombieNode = TileGraph.getNode(currentTile);
+    if (zombieNode != null)
     {
-      GraphNode zombieNode = TileGraph.tileGraph.get(currentTile);
       Tile zombieTile = zombieNode.nodeTile;
       GraphNode playerNode=null;
       Player following = setFollowing(follow);
@@ -787,21 +945,66 @@ public class Zombie extends Creature
         calcPath.twoD=true;
       }
       Tile playerTile = playerNode.nodeTile;
-      if (calcPath.findDistance(zombieTile, playerTile) <= 20 ||
-         (isMasterZombie && masterZombieChasePlayer.get()))
+      FlowField field = null;
+      if (following == entityManager.player && !zombieTile.isWall)
+      {
+        field = entityManager.getPlayerField(playerNode.cell);
+      }
+      // The field is also rooted at the player clones, so a zombie near one
+      // of them goes after it even when the player is far away.
+      boolean nearClone = field != null
+          && field.distance(zombieNode.cell) >= 0
+          && field.nearestRoot(zombieNode.cell) != playerNode.cell;
+      // The distances between the rooms of the level tell when the player
+      // is too far to smell without searching for the path.
+      HouseLayout layout = TileGraph.getLayout();
+      boolean outOfReach = layout != null && !zombieTile.isWall
+          && layout.walkingDistanceBound(zombieTile.col, zombieTile.row,
+              playerTile.col, playerTile.row) >= zombieSmell;
+      if ((calcPath.findDistance(zombieTile, playerTile) <= 20 && !outOfReach)
+          || nearClone || (isMasterZombie && masterZombieChasePlayer.get()))
       {
         if(!zombieTile.isWall)
         {
-          calcPath.findPath(zombieTile, playerTile, zombieNode);
+          // The master zombie can chase the player from beyond the reach of
+          // the shared field, so it falls back to its own search then.
+          boolean longChase = isMasterZombie && masterZombieChasePlayer.get();
+          int fieldDistance = field == null ? -1
+              : field.distance(zombieNode.cell);
+          if (field != null && !isMasterZombie && fieldDistance >= 0
+              && fieldDistance + 1 <= zombieSmell)
+          {
+            calcPath.followCooperatively(field, zombieNode);
+          } else if (field != null && (fieldDistance >= 0 || !longChase))
+          {
+            calcPath.followField(field, zombieNode);
+          } else if (longChase)
+          {
+            calcPath.findLongChasePath(zombieNode, playerNode);
+          } else
+          {
+            calcPath.findPath(zombieNode, playerNode);
+          }
         }
         if(zombieTile.isWall)
         {
           calcPath.distanceToPlayer=30;
         }
-      } else if (calcPath.findDistance(zombieTile, playerTile) > 20)
+        // Following the field to a clone finds the distance to the clone,
+        // not to the player.
+        if (nearClone)
+        {
+          calcPath.distanceToClone = calcPath.distanceToPlayer;
+          calcPath.distanceToPlayer = 30;
+        } else
+        {
+          calcPath.distanceToClone = 30;
+        }
+      } else
       {
         goingAfterPlayer.set(false);
         calcPath.distanceToPlayer = 30;
+        calcPath.distanceToClone = 30;
         if (twoDBoard && calcPath.oldPath.size() >= 1)
         {
           calcPath.removePath();
@@ -815,8 +1018,19 @@ public class Zombie extends Creature
       {
         goingAfterPlayer.set(false);
       }
+      chasingClone.set(!goingAfterPlayer.get()
+          && calcPath.distanceToClone <= zombieSmell);
     }
   }
+
+  /**
+   * @return True if the zombie is going after the player or a player clone,
+   *         and so moves along its path instead of wandering.
+   */
+  public boolean isChasing()
+  {
+    return goingAfterPlayer.get() || chasingClone.get();
+  }
   /**
    * Checks if the zombie is standing on a corner tile. If so, the zombie is
    * centered on that tile. This is done to deal with an occasional issue where
@@ -828,22 +1042,19 @@ public class Zombie extends Creature
    */
   public void checkForCornerTile(Tile currentTile)
   {
+    GraphNode node = TileGraph.getNode(currentTile);
+    if (node == null || !TileGraph.navGrid.isCornerTile(node.cell))
+    {
+      return;
+    }
     if (twoDBoard)
     {
-      if (currentTile.wallNE || currentTile.wallNW || currentTile.wallSW
-          || currentTile.wallSE || currentTile.isWall)
-      {
-        zombieCirc.setCenterX(currentTile.xPos * ZombieBoardRenderer.cellSize);
-        zombieCirc.setCenterY(currentTile.zPos * ZombieBoardRenderer.cellSize);
-      }
+      zombieCirc.setCenterX(currentTile.xPos * ZombieBoardRenderer.cellSize);
+      zombieCirc.setCenterY(currentTile.zPos * ZombieBoardRenderer.cellSize);
     } else
     {
-      if (currentTile.wallNE || currentTile.wallNW || currentTile.wallSW
-          || currentTile.wallSE || currentTile.isWall)
-      {
-        zombieCylinder.setTranslateZ(currentTile.zPos);
-        zombieCylinder.setTranslateX(currentTile.xPos);
-      }
+      zombieCylinder.setTranslateZ(currentTile.zPos);
+      zombieCylinder.setTranslateX(currentTile.xPos);
     }
   }
   
@@ -900,245 +1111,490 @@ public class Zombie extends Creature
    */
   public class CalculatePath
   {
-    Comparator<GraphNode> comparator = new NodeComparator();
-    PriorityQueue<GraphNode> priorityQueue = new PriorityQueue<GraphNode>(1,
-        comparator);
-    LinkedHashMap<Tile, Tile> cameFrom = new LinkedHashMap<>();
-    LinkedHashMap<Tile, Double> costSoFar = new LinkedHashMap<>();
-    double newCost;
-    double priority;
     int lastPathSize = 0;
     ArrayList<Circle> oldPath = new ArrayList<>();
     int distanceToPlayer;
-    LinkedList<Tile> path;
-    Tile destination;
-    Tile end;
+    // The distance to the player clone the zombie is following, or 30 if it
+    // isn't following one.
+    int distanceToClone = 30;
+    int[] path = new int[0];
+    int pathSize = 0;
     boolean twoD = false;
+    PathPlanner planner = null;
+    PathRequest<Zombie> pendingRequest = null;
+    int currentCell = -1;
+    // The tiles reserved for this zombie, one per step from reservedFrom.
+    final int reservationId = ++reservationIds;
+    int[] reserved = new int[0];
+    int reservedCount = 0;
+    int reservedFrom = 0;
+    int[] windowPath = new int[0];
 
     /**
-     * This method implements the A* algorithm to find the shortest distance
-     * between the zombie and the player. I based my implementation on Justin
-     * Hall's A* pathfinding program posted on the CS 351 website,
-     * https://www.cs.unm.edu/~joel/cs351/. His implementation was itself based
-     * on the implementation found on the website
+     * This method finds the shortest distance between the zombie and the
+     * player. Each zombie keeps its own planner, made by the PlannerRegistry
+     * from the one picked for the level. With D* Lite the search tree from the
+     * last call is kept and only the part of it that changed since then is
+     * searched again, so calls made while the player is still on the same tile
+     * cost almost nothing. The original
+     * implementation was an A* search based on Justin Hall's A* pathfinding
+     * program posted on the CS 351 website, https://www.cs.unm.edu/~joel/cs351/,
+     * which was itself based on the implementation found on the website
      * http://www.redblobgames.com/pathfinding/a-star/introduction.html.
      * 
-     * @param from
-     *          The tile the zombie is at.
-     * @param to
-     *          The tile the player is at.
      * @param zombieNode
      *          The node on the graph that represents the location of the
      *          zombie.
+     * @param playerNode
+     *          The node on the graph that represents the location of the
+     *          player.
      */
-    public void findPath(Tile from, Tile to, GraphNode zombieNode)
+    public void findPath(GraphNode zombieNode, GraphNode playerNode)
     {
-      if (from != null && to != null)
-      {
-        end = to;
-        destination = to;
-        priorityQueue.add(zombieNode);
-        costSoFar.put(from, 0.0);
-        cameFrom.put(from, null);
-        while (!priorityQueue.isEmpty())
+      if (planner == null || planner.getGrid() != TileGraph.navGrid)
+      {
+        planner = PlannerRegistry.create(TileGraph.navGrid);
+      }
+      PathPlanner search = planner;
+      int steps = search.search(zombieNode.cell, playerNode.cell);
+      // If the player's tile was never reached, there is no path to the player.
+      if (steps < 0)
+      {
+        distanceToPlayer = 30;
+        pathSize = 0;
+      } else
+      {
+        // The length of the path counts both the zombie's and the player's
+        // tiles.
+        distanceToPlayer = steps + 1;
+        boolean steer = steps >= 1 && findNewPath.get();
+        if (steer || twoD)
         {
-          GraphNode currentNode = priorityQueue.peek();
-          Tile current = priorityQueue.poll().nodeTile;
-          if (current.equals(to))
+          if (path.length < distanceToPlayer)
           {
-            break;
-          }
-          for (Tile neighbor : currentNode.neighbors)
-          {
-            if (costSoFar.get(current) != null)
-            {
-              newCost = costSoFar.get(current) + neighbor.movementCost;
-              if ((!costSoFar.containsKey(neighbor)
-                  || newCost < costSoFar.get(neighbor))
-                  && !checkNeighbors(current, neighbor, currentNode))
-              {
-                costSoFar.put(neighbor, newCost);
-                priority = newCost + findDistance(neighbor, to);
-                GraphNode nextNode = TileGraph.getNode(neighbor);
-                nextNode.priority = priority;
-                priorityQueue.add(nextNode);
-                cameFrom.put(neighbor, current);
-              }
-            }
+            path = new int[search.getGrid().size];
           }
+          pathSize = search.getPath(path);
+        }
+        if (steer)
+        {
+          steer(path, 0, pathSize, search.firstDirection());
         }
       }
-      distanceToPlayer = getPathLength(cameFrom, to);
       if (twoD)
         drawPath();
-      cameFrom.clear();
-      priorityQueue.clear();
-      costSoFar.clear();
     }
 
     /**
-     * This method is used with A* to check if a tile is next to a wall. If it
-     * is, and there is the possibility of diagonal movement to either side of
-     * that wall, then we want to make it so that the path doesn't go in the
-     * diagonal direction, and can only go to the tiles on either side of the
-     * current tile. We are doing this since movement in the diagonal direction
-     * would mean that the zombie would be trying to move through a wall.
-     * 
-     * @param current
-     *          The current tile we are evaluating for pathfinding.
-     * @param neighbor
-     *          The neighboring tile of the current tile.
-     * @param currentNode
-     *          The current node in the tile graph that is being evaluated.
-     * @return True if the neighbor is a diagonal tile and the current tile is
-     *         against a wall. False otherwise.
+     * Plans a path to the player for the master zombie's long chases, with
+     * the planner named by Attributes.Long_Path_Planner. The rooms of the
+     * house and the navigation mesh plan on the animation thread; if neither
+     * is asked for, or the one asked for can't find a path, the search is
+     * handed to the planning service.
+     *
+     * @param zombieNode
+     *          The node on the graph that represents the location of the
+     *          zombie.
+     * @param playerNode
+     *          The node on the graph that represents the location of the
+     *          player.
+     */
+    public void findLongChasePath(GraphNode zombieNode, GraphNode playerNode)
+    {
+      boolean found = false;
+      if (TileGraph.MESH_PLANNER.equals(Attributes.Long_Path_Planner))
+      {
+        found = findMeshPath(zombieNode, playerNode);
+      } else if (TileGraph.ROOM_PLANNER.equals(Attributes.Long_Path_Planner))
+      {
+        found = findRoomPath(zombieNode, playerNode);
+      }
+      if (!found)
+      {
+        findLongPath(zombieNode, playerNode);
+      }
+    }
+
+    /**
+     * Plans a path to the player over the navigation mesh. The search only
+     * looks at the rectangles the floor is split into, and the path it gives
+     * is a few straight lines from where the zombie stands, so the zombie
+     * walks straight at the first corner of it.
+     *
+     * @param zombieNode
+     *          The node on the graph that represents the location of the
+     *          zombie.
+     * @param playerNode
+     *          The node on the graph that represents the location of the
+     *          player.
+     * @return False if there is no path on the mesh, or if the zombie can't
+     *         walk straight to the first corner of it with room to spare,
+     *         such as when it has been pushed against a wall.
      */
-    private boolean checkNeighbors(Tile current, Tile neighbor,
-        GraphNode currentNode)
+    public boolean findMeshPath(GraphNode zombieNode, GraphNode playerNode)
     {
-      if (!twoD)
+      NavMesh mesh = TileGraph.getNavMesh();
+      if (mesh == null)
+      {
+        return false;
+      }
+      double x = boardX();
+      double z = boardZ();
+      int corners = mesh.findPath(x, z, mesh.grid.cellX(playerNode.cell) + .5,
+          mesh.grid.cellZ(playerNode.cell) + .5);
+      if (corners < 2 || !TileGraph.getPathSmoother().lineOfSight(x, z,
+          mesh.getCornerX(1), mesh.getCornerZ(1)))
       {
-        if (currentNode.wallToRight)
+        return false;
+      }
+      distanceToPlayer = (int) Math.ceil(mesh.getPathLength()) + 1;
+      if (findNewPath.get())
+      {
+        calculateHeadings(mesh.getCornerX(1) - x, mesh.getCornerZ(1) - z);
+      }
+      if (twoD)
+      {
+        if (path.length < corners)
         {
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col - 1][current.row - 1]))
-          {
-            return true;
-          }
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col + 1][current.row - 1]))
-          {
-            return true;
-          }
+          path = new int[mesh.grid.size];
         }
-        if (currentNode.wallToLeft)
+        for (int i = 0; i < corners; i++)
         {
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col - 1][current.row + 1]))
-          {
-            return true;
-          }
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col + 1][current.row + 1]))
-          {
-            return true;
-          }
+          path[i] = mesh.grid.cellAt(mesh.getCornerX(i), mesh.getCornerZ(i));
         }
-        if (currentNode.wallOnBottom)
+        pathSize = corners;
+        drawPath();
+      }
+      return true;
+    }
+
+    /**
+     * Plans a path to the player over the rooms of the house. The search only
+     * looks at the openings between rooms, and the path on the tiles is only
+     * found inside the room the zombie is in, so the cost of a chase across
+     * the whole house doesn't grow with the size of the map.
+     *
+     * @param zombieNode
+     *          The node on the graph that represents the location of the
+     *          zombie.
+     * @param playerNode
+     *          The node on the graph that represents the location of the
+     *          player.
+     * @return False if the zombie and player can't be planned between this
+     *         way, such as when they are in the same room.
+     */
+    public boolean findRoomPath(GraphNode zombieNode, GraphNode playerNode)
+    {
+      RoomGraph rooms = TileGraph.getRoomGraph();
+      if (rooms == null)
+      {
+        return false;
+      }
+      int steps = rooms.search(zombieNode.cell, playerNode.cell);
+      if (steps < 0)
+      {
+        return false;
+      }
+      distanceToPlayer = steps + 1;
+      boolean steer = findNewPath.get() && rooms.firstDirection() >= 0;
+      if (steer || twoD)
+      {
+        if (path.length < rooms.grid.size)
         {
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col + 1][current.row - 1]))
-          {
-            return true;
-          }
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col + 1][current.row + 1]))
-          {
-            return true;
-          }
+          path = new int[rooms.grid.size];
         }
-        if (currentNode.wallOnTop)
+        pathSize = rooms.getPath(path);
+      }
+      if (steer)
+      {
+        steer(path, 0, pathSize, rooms.firstDirection());
+      }
+      if (twoD)
+      {
+        drawPath();
+      }
+      return true;
+    }
+
+    /**
+     * Finds a path to the player with Jump Point Search. This is used by the
+     * master zombie when it chases the player from too far away to use the
+     * flow field. Long chases down hallways only expand the cells where the
+     * path turns instead of every cell along the way.
+     *
+     * The search is handed to the planning service of the EntityManager, and
+     * the zombie keeps its last heading until receivePath is called with the
+     * result. Only one request is out at a time. If the service can't take the
+     * request, the search is done here instead.
+     *
+     * @param zombieNode
+     *          The node on the graph that represents the location of the
+     *          zombie.
+     * @param playerNode
+     *          The node on the graph that represents the location of the
+     *          player.
+     */
+    public void findLongPath(GraphNode zombieNode, GraphNode playerNode)
+    {
+      currentCell = zombieNode.cell;
+      if (pendingRequest != null)
+      {
+        return;
+      }
+      PlanningService<Zombie> service = entityManager.planningService;
+      if (service != null)
+      {
+        pendingRequest = service.submit(Zombie.this, TileGraph.navGrid,
+            zombieNode.cell, playerNode.cell);
+        if (pendingRequest != null)
         {
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col - 1][current.row + 1]))
-          {
-            return true;
-          }
-          if (neighbor.equals(
-              entityManager.zombieHouse.gameBoard[current.col - 1][current.row - 1]))
-          {
-            return true;
-          }
+          return;
         }
+      }
+      JumpPointSearch search = TileGraph.getJumpPointSearch();
+      int steps = search.search(zombieNode.cell, playerNode.cell);
+      if (steps < 0)
+      {
+        distanceToPlayer = 30;
+        pathSize = 0;
       } else
       {
-        if (currentNode.wallToRight)
+        distanceToPlayer = steps + 1;
+        boolean steer = steps >= 1 && findNewPath.get();
+        if (steer || twoD)
         {
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col - 1][current.row + 1]))
+          if (path.length < distanceToPlayer)
           {
-            return true;
-          }
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col + 1][current.row + 1]))
-          {
-            return true;
+            path = new int[search.getGrid().size];
           }
+          pathSize = search.getPath(path);
         }
-        if (currentNode.wallToLeft)
+        if (steer)
         {
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col - 1][current.row - 1]))
-          {
-            return true;
-          }
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col + 1][current.row - 1]))
-          {
-            return true;
-          }
+          steer(path, 0, pathSize, search.firstDirection());
         }
-        if (currentNode.wallOnBottom)
+      }
+      if (twoD)
+        drawPath();
+    }
+
+    /**
+     * Takes a path found by the planning service. The zombie may have moved
+     * on since the path was asked for, so the path is picked up from the cell
+     * the zombie was last on. If that cell isn't on the path, the path is
+     * thrown away and a new one is asked for on the next update.
+     *
+     * @param result
+     *          The path that was found.
+     */
+    public void receivePath(PathResult<Zombie> result)
+    {
+      if (result.request != pendingRequest)
+      {
+        return;
+      }
+      pendingRequest = null;
+      if (result.request.grid != TileGraph.navGrid)
+      {
+        return;
+      }
+      if (!result.pathFound())
+      {
+        distanceToPlayer = 30;
+        pathSize = 0;
+      } else
+      {
+        int index = 0;
+        while (index < result.path.length && result.path[index] != currentCell)
         {
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col + 1][current.row - 1]))
-          {
-            return true;
-          }
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col + 1][current.row + 1]))
-          {
-            return true;
-          }
+          index++;
         }
-        if (currentNode.wallOnTop)
+        if (index == result.path.length)
         {
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col - 1][current.row + 1]))
+          return;
+        }
+        distanceToPlayer = result.path.length - index;
+        if (index + 1 < result.path.length && findNewPath.get())
+        {
+          steer(result.path, index, result.path.length,
+              TileGraph.navGrid.directionBetween(result.path[index],
+                  result.path[index + 1]));
+        }
+        if (twoD)
+        {
+          if (path.length < result.path.length)
           {
-            return true;
+            path = new int[TileGraph.navGrid.size];
           }
-          if (neighbor.equals(
-              ZombieBoardRenderer.gameBoard[current.col - 1][current.row - 1]))
+          pathSize = result.path.length - index;
+          System.arraycopy(result.path, index, path, 0, pathSize);
+        }
+      }
+      if (twoD)
+        drawPath();
+    }
+
+    /**
+     * Plans the zombie's next few steps toward the player around the tiles
+     * the other chasing zombies have reserved, and reserves them in turn.
+     * The distance to the player is still read from the flow field, so the
+     * zombie smells the player the same as before; only its heading changes
+     * when another zombie is in the way.
+     *
+     * @param field
+     *          The flow field rooted at the player's tile.
+     * @param zombieNode
+     *          The node on the graph that represents the location of the
+     *          zombie.
+     */
+    public void followCooperatively(FlowField field, GraphNode zombieNode)
+    {
+      ReservationTable table = entityManager.getReservations();
+      CooperativeSearch search = entityManager.getCooperativeSearch();
+      double tilesPerTick = twoDBoard
+          ? twoDSpeed / ZombieBoardRenderer.cellSize : zombieWalkingSpeed;
+      int now = (int) (entityManager.pathScheduler.getTick() * tilesPerTick);
+      for (int t = 0; t < reservedCount; t++)
+      {
+        table.release(reserved[t], reservedFrom + t, reservationId);
+      }
+      reservedCount = 0;
+      int steps = search.search(zombieNode.cell, field, table, reservationId,
+          now);
+      if (steps < 0)
+      {
+        followField(field, zombieNode);
+        return;
+      }
+      int length = search.getPathLength();
+      if (reserved.length < length)
+      {
+        reserved = new int[search.window + 1];
+        windowPath = new int[search.window + 1];
+      }
+      int distinct = 0;
+      for (int t = 0; t < length; t++)
+      {
+        int cell = search.getPathCell(t);
+        if (field.distance(cell) != 0)
+        {
+          table.reserve(cell, now + t, reservationId);
+        }
+        reserved[t] = cell;
+        if (distinct == 0 || windowPath[distinct - 1] != cell)
+        {
+          windowPath[distinct++] = cell;
+        }
+      }
+      reservedCount = length;
+      reservedFrom = now;
+      distanceToPlayer = field.distance(zombieNode.cell) + 1;
+      if (distinct > 1 && findNewPath.get())
+      {
+        steer(windowPath, 0, distinct, search.firstDirection());
+      }
+      if (twoD)
+      {
+        if (path.length < distanceToPlayer)
+        {
+          path = new int[field.grid.size];
+        }
+        pathSize = field.getPath(zombieNode.cell, path);
+        drawPath();
+      }
+    }
+
+    /**
+     * Reads the distance and heading to the player from a flow field rooted
+     * at the player's tile. This takes the place of a search, so it costs the
+     * same no matter how far away the player is. A zombie that is not in the
+     * field is too far away to smell the player.
+     *
+     * @param field
+     *          The flow field rooted at the player's tile.
+     * @param zombieNode
+     *          The node on the graph that represents the location of the
+     *          zombie.
+     */
+    public void followField(FlowField field, GraphNode zombieNode)
+    {
+      int steps = field.distance(zombieNode.cell);
+      if (steps < 0)
+      {
+        distanceToPlayer = 30;
+        pathSize = 0;
+      } else
+      {
+        distanceToPlayer = steps + 1;
+        boolean steer = steps >= 1 && findNewPath.get();
+        if (steer || twoD)
+        {
+          if (path.length < distanceToPlayer)
           {
-            return true;
+            path = new int[field.grid.size];
           }
+          pathSize = field.getPath(zombieNode.cell, path);
+        }
+        if (steer)
+        {
+          steer(path, 0, pathSize, field.direction(zombieNode.cell));
         }
       }
-      return false;
+      if (twoD)
+        drawPath();
     }
 
     /**
-     * Get length of path between player and zombie. We do this since the zombie
-     * only goes after the player in the case of the shortest path length being
-     * less than 15. The way I structured this was partially inspired by code from
-     * Justin Hall's A* pathfinding program from his "printPath" method. This code is
-     * from the CS 351 website:
-     * https://www.cs.unm.edu/~joel/cs351/
-     * 
-     * @param cameFrom
-     *          The map that represents the shortest path that was found to get
-     *          to the player.
-     * @param end
-     *          The ending tile in the path. This is where the player is.
-     * @return The length of the shortest path to the player.
+     * @return The x position of the zombie on the game board, in tiles.
      */
-    private int getPathLength(LinkedHashMap<Tile, Tile> cameFrom, Tile end)
+    double boardX()
     {
-      int counter = 0;
-      LinkedList<Tile> path = new LinkedList<>();
-      Tile curr = end;
-      while (curr != null)
+      return twoDBoard ? zombieCirc.getCenterX() / ZombieBoardRenderer.cellSize
+          : zombieCylinder.getTranslateX();
+    }
+
+    /**
+     * @return The z position of the zombie on the game board, in tiles.
+     */
+    double boardZ()
+    {
+      return twoDBoard ? zombieCirc.getCenterY() / ZombieBoardRenderer.cellSize
+          : zombieCylinder.getTranslateZ();
+    }
+
+    /**
+     * Points the zombie at the furthest cell of its path that it can walk to
+     * in a straight line from where it is standing, so that it cuts across
+     * rooms at any angle instead of turning between the 8 grid directions at
+     * every bend of the path. If it can't see even the next cell of the path,
+     * such as when it has been pushed around a corner, it takes the first move
+     * of the path instead.
+     *
+     * @param cells
+     *          The cells of the path.
+     * @param first
+     *          The index of the cell the zombie is on.
+     * @param count
+     *          The index just past the last cell of the path.
+     * @param firstDirection
+     *          The NavGrid direction of the first move of the path.
+     */
+    void steer(int[] cells, int first, int count, int firstDirection)
+    {
+      PathSmoother smoother = TileGraph.getPathSmoother();
+      double x = boardX();
+      double z = boardZ();
+      int waypoint = smoother == null ? -1
+          : smoother.furthestVisible(x, z, cells, first + 1, count);
+      if (waypoint < 0)
       {
-        path.addFirst(curr);
-        curr = cameFrom.get(curr);
-      }
-      if (path.size() >= 2 && findNewPath.get())
+        calculateHeadings(firstDirection);
+      } else
       {
-        calculateHeadings(path.get(0), path.get(1));
+        NavGrid grid = smoother.grid;
+        calculateHeadings(grid.cellX(cells[waypoint]) + .5 - x,
+            grid.cellZ(cells[waypoint]) + .5 - z);
       }
-      counter = path.size();
-      return counter;
     }
 
     /**
@@ -1148,16 +1604,10 @@ public class Zombie extends Creature
      */
     public void drawPath()
     {
-      LinkedList<Tile> path = new LinkedList<>();
       ArrayList<Circle> circles = new ArrayList<>();
-      Tile curr = end;
-      while (curr != null)
-      {
-        path.addFirst(curr);
-        curr = cameFrom.get(curr);
-      }
-      for (Tile n : path)
+      for (int i = 0; i < pathSize; i++)
       {
+        Tile n = TileGraph.navGrid.tile(path[i]);
         Circle pathCircle = new Circle(n.xPos * ZombieBoardRenderer.cellSize,
             n.zPos * ZombieBoardRenderer.cellSize, 2, Color.WHITE);
         circles.add(pathCircle);
@@ -24,10 +24,15 @@ public class ZombieClone extends Zombie
 
   private double lastxPos;
   private double lastzPos;
+  // False until the clone has been placed by a tick, so that it isn't drawn
+  // coming from where it was before it started.
+  private boolean placed = false;
   private boolean active = false;
   public Node[] cloneMesh;
 
   private boolean isDead = false;
+  // The radius of the clone, for its cylinder and for collision checks.
+  public static final double RADIUS = .2;
   public Cylinder cloneCylinder;
 
   public int index;
@@ -53,7 +58,7 @@ public class ZombieClone extends Zombie
   public void create3DClone(int cellSize)
   {
     Cylinder cylinder;
-    cylinder = new Cylinder(.2, 1);
+    cylinder = new Cylinder(RADIUS, 1);
     cylinder.setTranslateX(zPos/* * cellSize*/);
     cylinder.setTranslateZ(xPos/* * cellSize*/);
     cloneCylinder = cylinder;
@@ -80,11 +85,15 @@ public class ZombieClone extends Zombie
         xPos = actionSequence.get(currentTick).getXPos();
         zPos = actionSequence.get(currentTick).getZPos();
         currentAction = actionSequence.get(currentTick).getAction();
+        if (!placed)
+        {
+          lastxPos = xPos;
+          lastzPos = zPos;
+          placed = true;
+        }
 
         for (int i = 0; i < cloneMesh.length; i++)
         {
-          cloneMesh[i].setTranslateZ(zPos);
-          cloneMesh[i].setTranslateX(xPos);
           if (health > 0)
             cloneMesh[i].setRotate(actionSequence.get(currentTick).getAngle() + 180);
         }
@@ -120,6 +129,28 @@ public class ZombieClone extends Zombie
 
   }
 
+  /**
+   * Moves the clone's meshes to where it is drawn for a frame, part of the
+   * way between the steps of the last two ticks it replayed.
+   *
+   * @param alpha
+   *          How far the frame is into the next tick, from 0 to 1.
+   */
+  public void render(double alpha)
+  {
+    if (!active || !placed || cloneMesh == null)
+    {
+      return;
+    }
+    double x = lastxPos + (xPos - lastxPos) * alpha;
+    double z = lastzPos + (zPos - lastzPos) * alpha;
+    for (int i = 0; i < cloneMesh.length; i++)
+    {
+      cloneMesh[i].setTranslateX(x);
+      cloneMesh[i].setTranslateZ(z);
+    }
+  }
+
   public void setActive(boolean active)
   {
     this.active = active;
@@ -141,15 +172,9 @@ public class ZombieClone extends Zombie
   public GraphNode getCurrentNode()
   {
     GraphNode currentNode = null;
-    Tile currentTile = null;
     double currentX = cloneCylinder.getTranslateX();
     double currentZ = cloneCylinder.getTranslateZ();
-    currentTile = entityManager.zombieHouse.gameBoard[(int) currentZ][(int) currentX];
-    if (TileGraph.tileGraph.containsKey(currentTile))
-    {
-      currentNode = TileGraph.tileGraph.get(currentTile);
-      return currentNode;
-    }
+    currentNode = TileGraph.getNode((int) currentZ, (int) currentX);
     return currentNode;
   }
 
@@ -7,7 +7,7 @@ package game_engine;
  */
 public class Attributes
 {
-  public static double Frame_Rate = 60; // frames per second
+  public static double Frame_Rate = 60; // game ticks per second
 
   // Player
   public static double Player_Hearing = 20;
@@ -26,6 +26,9 @@ public class Attributes
   // Zombie
   public static double Zombie_Smell = 15;
   public static double Max_Zombies = 20;
+  public static double Zombie_Path_Budget = 2; // milliseconds per drawn frame for the zombies not updated every frame
+  public static String Path_Planner = "astar"; // astar, jps, dstar, or auto to time astar and dstar on the level
+  public static String Long_Path_Planner = "service"; // service, rooms or mesh, for the master zombie's long chases
   
   // Map
   public static int Map_Width = 40;
@@ -15,6 +15,7 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import levels.HouseLayout;
 import levels.Tile;
 import sounds.Sound;
 import sounds.SoundManager;
@@ -170,10 +171,12 @@ public class Scenes
         ZombieHouse3d tempGameObject = threeDGameObject;
         ArrayList<PlayerClone> cloneList = tempGameObject.tempPlayerClones;
         Tile[][] tempGameBoard = tempGameObject.tempGameBoard;
+        HouseLayout tempLayout = tempGameObject.tempLayout;
         boolean sameLevel = tempGameObject.sameLevel;
         createNewGameBoard(0);
         threeDGameObject.tempPlayerClones = cloneList;
         threeDGameObject.tempGameBoard = tempGameBoard;
+        threeDGameObject.tempLayout = tempLayout;
         threeDGameObject.sameLevel = sameLevel;
 
         soundManager.playTrack(0);
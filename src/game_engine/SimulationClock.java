@@ -0,0 +1,77 @@
+package game_engine;
+
+/**
+ * Turns the times of the frames the AnimationTimer draws into a steady number
+ * of game ticks. The time since the last frame is added up, and a tick is
+ * taken for every full tick's worth of it, so the game runs at the same
+ * speed however fast the frames come: a late frame is caught up with more
+ * than one tick, and an early one may get none. What is left over is how far
+ * the game is into the next tick, which the frame uses to draw everything
+ * part of the way between where the last two ticks left it.
+ *
+ * Everything the ticks count, such as the speeds of the creatures and the
+ * steps the clones replay, keeps its meaning at any frame rate.
+ */
+public class SimulationClock
+{
+  /**
+   * The most ticks taken for one frame. If the game falls further behind than
+   * that, as it can after a long pause of the window, the rest of the time is
+   * dropped instead of being caught up all at once.
+   */
+  public static final int MAX_TICKS_PER_FRAME = 5;
+
+  public final long tickNanos;
+
+  // The time of the last frame, or -1 before the first one.
+  private long lastFrame = -1;
+  // The time since the last tick that hasn't been ticked yet.
+  private long accumulated = 0;
+
+  /**
+   * @param ticksPerSecond
+   *          How many ticks the game takes each second.
+   */
+  public SimulationClock(double ticksPerSecond)
+  {
+    tickNanos = Math.round(1e9 / ticksPerSecond);
+  }
+
+  /**
+   * Adds the time since the last frame.
+   *
+   * @param now
+   *          The time of this frame in nanoseconds, as the AnimationTimer
+   *          gives it.
+   * @return How many ticks to take for this frame. The first frame always
+   *         takes one.
+   */
+  public int advance(long now)
+  {
+    if (lastFrame < 0)
+    {
+      lastFrame = now;
+      accumulated = tickNanos;
+    } else
+    {
+      accumulated += Math.max(now - lastFrame, 0);
+      lastFrame = now;
+    }
+    long ticks = accumulated / tickNanos;
+    accumulated -= ticks * tickNanos;
+    if (ticks > MAX_TICKS_PER_FRAME)
+    {
+      ticks = MAX_TICKS_PER_FRAME;
+    }
+    return (int) ticks;
+  }
+
+  /**
+   * @return How far the game is into the next tick, from 0 to 1, for drawing
+   *         things between where the last two ticks put them.
+   */
+  public double getAlpha()
+  {
+    return (double) accumulated / tickNanos;
+  }
+}
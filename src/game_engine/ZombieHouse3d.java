@@ -6,8 +6,9 @@ import java.util.LinkedList;
 import com.interactivemesh.jfx.importer.obj.ObjImportOption;
 import com.interactivemesh.jfx.importer.obj.ObjModelImporter;
 
+import collision.CollisionWorld;
 import entities.*;
-import graphing.GraphNode;
+import graphing.NavGrid;
 import graphing.TileGraph;
 import gui.Main;
 import javafx.animation.AnimationTimer;
@@ -37,10 +38,13 @@ import javafx.scene.shape.Box;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
 import javafx.stage.Stage;
+import levels.HouseLayout;
 import levels.ProceduralMap;
 import levels.TextureMaps;
 import levels.Tile;
 import levels.Tile.TileType;
+import levels.TileTrigger;
+import levels.TriggerLayer;
 import sounds.SoundManager;
 
 /**
@@ -68,6 +72,8 @@ public class ZombieHouse3d
   public int boardHeight;
   public Tile[][] gameBoard;
   public Tile[][] tempGameBoard = null;
+  public HouseLayout layout;
+  public HouseLayout tempLayout = null;
   private Box[][] floorDrawingBoard;
   private Box[][] roofDrawingBoard;
 
@@ -101,6 +107,9 @@ public class ZombieHouse3d
   private String Player_Clone = "Resources/Meshes/Player_Clone/Casual_Man.obj";
 
   public static int tickCount;
+  // Where the player starts on the board, as gameBoard[z][x].
+  public static final int PLAYER_SPAWN_X = 3;
+  public static final int PLAYER_SPAWN_Z = 3;
 
   public ArrayList<PlayerClone> tempPlayerClones = new ArrayList<>();
   public boolean sameLevel = false;
@@ -178,7 +187,7 @@ public class ZombieHouse3d
     camera.setRotationAxis(Rotate.Y_AXIS);
 
     // Initialize player
-    entityManager.player = new Player(3, 0, 3, camera, entityManager, light);
+    entityManager.player = new Player(PLAYER_SPAWN_X, 0, PLAYER_SPAWN_Z, camera, entityManager, light);
     entityManager.player.camera = camera;
 
     entityManager.createZombies(gameBoard, boardHeight, boardWidth);
@@ -299,6 +308,8 @@ public class ZombieHouse3d
     {
       for (int row = 0; row < boardWidth; row++)
       {
+        gameBoard[col][row].col = col;
+        gameBoard[col][row].row = row;
         if (gameBoard[col][row].getType().equals("wall")
                 || gameBoard[col][row].getType().equals("red decor")
                 || gameBoard[col][row].getType().equals("orange decor")
@@ -312,81 +323,26 @@ public class ZombieHouse3d
         {
           isWall = false;
         }
-        // The following code calls the appropriate methods to build the graph
-        // to be used in zombie pathfinding.
-        if (col == 0 && row == 0)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-                  gameBoard[col][row + 1], gameBoard[col + 1][row + 1], row, col,
-                  isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == 0 && row == boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-                  gameBoard[col][row - 1], gameBoard[col + 1][row - 1], row, col,
-                  isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == boardHeight - 1 && row == 0)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col - 1][row],
-                  gameBoard[col][row + 1], gameBoard[col - 1][row + 1], row, col,
-                  isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == boardHeight - 1 && row == boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col - 1][row],
-                  gameBoard[col][row - 1], gameBoard[col - 1][row - 1], row, col,
-                  isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (row == 0 && col != 0 && col != boardHeight - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-                  gameBoard[col - 1][row], gameBoard[col][row + 1],
-                  gameBoard[col + 1][row + 1], gameBoard[col - 1][row + 1], row,
-                  col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (row == boardWidth - 1 && col != 0 && col != boardHeight - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-                  gameBoard[col - 1][row], gameBoard[col][row - 1],
-                  gameBoard[col + 1][row - 1], gameBoard[col - 1][row - 1], row,
-                  col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == 0 && row != 0 && row != boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-                  gameBoard[col][row + 1], gameBoard[col][row - 1],
-                  gameBoard[col + 1][row + 1], gameBoard[col + 1][row - 1], row,
-                  col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == boardHeight - 1 && row != 0 && row != boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col][row + 1],
-                  gameBoard[col - 1][row], gameBoard[col][row - 1],
-                  gameBoard[col - 1][row + 1], gameBoard[col - 1][row - 1], row,
-                  col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col >= 1 && col < boardHeight - 1 && row >= 1
-                && row < boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-                  gameBoard[col - 1][row], gameBoard[col][row + 1],
-                  gameBoard[col][row - 1], gameBoard[col + 1][row + 1],
-                  gameBoard[col + 1][row - 1], gameBoard[col - 1][row + 1],
-                  gameBoard[col - 1][row - 1], row, col, isWall,
-                  gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
       }
     }
+    entityManager.collisionWorld = new CollisionWorld(gameBoard);
+    // The player finds the way out by stepping onto an exit tile.
+    entityManager.triggerLayer = new TriggerLayer(gameBoard);
+    entityManager.triggerLayer.addTrigger(TileType.exit, new TileTrigger()
+    {
+      @Override
+      public void entered(Tile tile, Tile from)
+      {
+        entityManager.player.foundExit.set(true);
+      }
+
+      @Override
+      public void left(Tile tile, Tile to)
+      {
+      }
+    });
+    // Build the graph to be used in zombie pathfinding.
+    TileGraph.createGraph(gameBoard, layout);
 
     System.out.println("Number of Zombies: " + entityManager.zombies.size());
     System.out.println("Number of Player Clones: " + entityManager.playerClones.size());
@@ -481,15 +437,32 @@ public class ZombieHouse3d
    */
   private class MainGameLoop extends AnimationTimer
   {
+    private final SimulationClock clock = new SimulationClock(Attributes.Frame_Rate);
+
     /**
      * Call the appropriate method to update the attributes of the
-     * entities in the game.
+     * entities in the game, once for every tick that has come due since the
+     * last frame, and then draw them between the last two ticks.
      */
     public void handle(long now)
     {
+      int ticks = clock.advance(now);
       if (!paused)
       {
-        entityManager.tick();
+        for (int i = 0; i < ticks; i++)
+        {
+          entityManager.tick();
+          // The game was won or lost and torn down during the tick.
+          if (entityManager == null)
+          {
+            return;
+          }
+        }
+        if (ticks > 0)
+        {
+          entityManager.planPaths(ticks);
+        }
+        entityManager.render(clock.getAlpha());
         try
         {
           pHealth.setProgress(entityManager.player.health / Attributes.Player_Health);
@@ -520,11 +493,47 @@ public class ZombieHouse3d
         }
       } else
       {
-        entityManager.player.tick();
+        for (int i = 0; i < ticks; i++)
+        {
+          entityManager.player.tick();
+        }
+        entityManager.render(clock.getAlpha());
       }
     }
   }
 
+  /**
+   * Checks that the player can walk from where they start to every exit on
+   * the board. The floor is split into connected areas when the grid is
+   * built, so each exit only has to be checked against the area the player
+   * starts in.
+   *
+   * @param board The board to check.
+   * @return True if the board has an exit and all of its exits can be reached.
+   */
+  public static boolean exitsReachable(Tile[][] board)
+  {
+    NavGrid grid = new NavGrid(board);
+    int spawn = grid.cell(PLAYER_SPAWN_Z, PLAYER_SPAWN_X);
+    if (spawn < 0 || !grid.isWalkable(spawn))
+    {
+      return false;
+    }
+    boolean foundExit = false;
+    for (int cell = 0; cell < grid.size; cell++)
+    {
+      if (grid.tile(cell).type == TileType.exit)
+      {
+        foundExit = true;
+        if (!grid.isConnected(spawn, cell))
+        {
+          return false;
+        }
+      }
+    }
+    return foundExit;
+  }
+
   /**
    * @param gameStage The stage into which all of the attributes of the game
    *                  are being placed and rendered.
@@ -536,12 +545,20 @@ public class ZombieHouse3d
     System.out.println(sameLevel);
     if (sameLevel == false)
     {
-      gameBoard = ProceduralMap.generateMap(Attributes.Map_Width, Attributes.Map_Height, difficulty);
+      layout = ProceduralMap.generateLevel(Attributes.Map_Width, Attributes.Map_Height, difficulty);
+      if (!exitsReachable(layout.board))
+      {
+        throw new IllegalStateException(
+            "The generated level has an exit the player can't walk to");
+      }
+      gameBoard = layout.board;
       tempGameBoard = gameBoard;
+      tempLayout = layout;
       sameLevel = true;
     } else
     {
       gameBoard = tempGameBoard;
+      layout = tempLayout;
     }
 
     boardWidth = gameBoard[0].length;
@@ -0,0 +1,257 @@
+package graphing;
+
+import java.util.Arrays;
+
+/**
+ * A reusable A* search over a NavGrid. All of the bookkeeping lives in
+ * primitive arrays sized to the grid: the cost so far and the direction the
+ * cell was reached from are stored per cell, and an array of generation stamps
+ * tells which of those values belong to the current search. Starting a new
+ * search only bumps the generation, so nothing has to be cleared or allocated
+ * between searches.
+ *
+ * An instance holds the state of one search at a time, so it must not be
+ * shared between threads.
+ */
+public class AStarSearch implements PathPlanner
+{
+  public final NavGrid grid;
+  private final int straightCost;
+  private final int diagonalCost;
+
+  private final int[] costSoFar;
+  private final byte[] cameFrom;
+  private final int[] visited;
+  private final int[] closed;
+  private final IndexedMinHeap open;
+  private int generation = 0;
+
+  private int start = -1;
+  private int goal = -1;
+  private boolean found = false;
+  private int expansions = 0;
+
+  /**
+   * Creates a search where every move costs 1, which is how the zombies have
+   * always measured their distance to the player.
+   *
+   * @param grid
+   *          The grid to search.
+   */
+  public AStarSearch(NavGrid grid)
+  {
+    this(grid, 1, 1);
+  }
+
+  /**
+   * @param grid
+   *          The grid to search.
+   * @param straightCost
+   *          The cost of a move along x or z.
+   * @param diagonalCost
+   *          The cost of a diagonal move.
+   */
+  public AStarSearch(NavGrid grid, int straightCost, int diagonalCost)
+  {
+    this.grid = grid;
+    this.straightCost = straightCost;
+    this.diagonalCost = diagonalCost;
+    costSoFar = new int[grid.size];
+    cameFrom = new byte[grid.size];
+    visited = new int[grid.size];
+    closed = new int[grid.size];
+    open = new IndexedMinHeap(grid.size);
+  }
+
+  @Override
+  public NavGrid getGrid()
+  {
+    return grid;
+  }
+
+  /**
+   * Finds the cheapest path between two cells.
+   *
+   * @param from
+   *          The cell to start at.
+   * @param to
+   *          The cell to find a path to.
+   * @return The number of moves in the path, or -1 if there is no path.
+   */
+  @Override
+  public int search(int from, int to)
+  {
+    nextGeneration();
+    start = from;
+    goal = to;
+    found = false;
+    expansions = 0;
+    open.clear();
+    if (!grid.isWalkable(from) || !grid.isWalkable(to)
+        || !grid.isConnected(from, to))
+    {
+      return -1;
+    }
+    visited[from] = generation;
+    costSoFar[from] = 0;
+    cameFrom[from] = -1;
+    open.insert(from, heuristic(from));
+    while (!open.isEmpty())
+    {
+      int current = open.poll();
+      if (current == to)
+      {
+        found = true;
+        break;
+      }
+      closed[current] = generation;
+      expansions++;
+      int moves = grid.moves(current);
+      while (moves != 0)
+      {
+        int d = Integer.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        int next = grid.neighbor(current, d);
+        if (closed[next] == generation)
+        {
+          continue;
+        }
+        int newCost = costSoFar[current]
+            + ((d & 1) == 0 ? straightCost : diagonalCost);
+        if (visited[next] != generation)
+        {
+          visited[next] = generation;
+          costSoFar[next] = newCost;
+          cameFrom[next] = (byte) d;
+          open.insert(next, newCost + heuristic(next));
+        } else if (newCost < costSoFar[next])
+        {
+          costSoFar[next] = newCost;
+          cameFrom[next] = (byte) d;
+          open.decreaseKey(next, newCost + heuristic(next));
+        }
+      }
+    }
+    return found ? pathLength() : -1;
+  }
+
+  /**
+   * Octile distance to the goal. With every move costing 1 this is the same
+   * as the larger of the x and z distances.
+   */
+  private int heuristic(int cell)
+  {
+    int dx = Math.abs(grid.cellX(cell) - grid.cellX(goal));
+    int dz = Math.abs(grid.cellZ(cell) - grid.cellZ(goal));
+    int diagonal = Math.min(dx, dz);
+    int straight = Math.max(dx, dz) - diagonal;
+    return diagonal * diagonalCost + straight * straightCost;
+  }
+
+  private void nextGeneration()
+  {
+    generation++;
+    if (generation == Integer.MAX_VALUE)
+    {
+      Arrays.fill(visited, 0);
+      Arrays.fill(closed, 0);
+      generation = 1;
+    }
+  }
+
+  /**
+   * @return True if the last search reached its goal.
+   */
+  public boolean pathFound()
+  {
+    return found;
+  }
+
+  /**
+   * @return The number of cells that were expanded by the last search.
+   */
+  @Override
+  public int getExpansions()
+  {
+    return expansions;
+  }
+
+  /**
+   * @return The cost of the path found by the last search.
+   */
+  public int pathCost()
+  {
+    return found ? costSoFar[goal] : -1;
+  }
+
+  /**
+   * @return The number of moves in the path found by the last search.
+   */
+  public int pathLength()
+  {
+    if (!found)
+    {
+      return -1;
+    }
+    int steps = 0;
+    for (int cell = goal; cell != start; cell = previous(cell))
+    {
+      steps++;
+    }
+    return steps;
+  }
+
+  /**
+   * @return The direction of the first move along the path found by the last
+   *         search, or -1 if there is no move to make.
+   */
+  @Override
+  public int firstDirection()
+  {
+    if (!found || start == goal)
+    {
+      return -1;
+    }
+    int cell = goal;
+    int previous = previous(cell);
+    while (previous != start)
+    {
+      cell = previous;
+      previous = previous(cell);
+    }
+    return cameFrom[cell];
+  }
+
+  /**
+   * Copies the cells of the path found by the last search into the given
+   * array, from the start to the goal.
+   *
+   * @param path
+   *          The array to fill. It must be long enough to hold the path.
+   * @return The number of cells written.
+   */
+  @Override
+  public int getPath(int[] path)
+  {
+    if (!found)
+    {
+      return 0;
+    }
+    int count = pathLength() + 1;
+    int cell = goal;
+    for (int i = count - 1; i >= 0; i--)
+    {
+      path[i] = cell;
+      if (i > 0)
+      {
+        cell = previous(cell);
+      }
+    }
+    return count;
+  }
+
+  private int previous(int cell)
+  {
+    return grid.neighbor(cell, (cameFrom[cell] + 4) & 7);
+  }
+}
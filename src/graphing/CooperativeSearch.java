@@ -0,0 +1,229 @@
+package graphing;
+
+import java.util.Arrays;
+
+/**
+ * Windowed Hierarchical Cooperative A* for zombies chasing the same target.
+ * Each zombie searches over tiles and time steps together, for a short
+ * window of steps ahead, and skips the tile and step pairs that other zombies
+ * have already reserved. Waiting on a tile for a step is a move like any
+ * other. The path found is then reserved in turn, so the zombies that plan
+ * after it go around it, and zombies stop piling into the same tile of a
+ * hallway.
+ *
+ * The distance left from the end of the window is read from a flow field
+ * rooted at the target, which is the exact distance if no one is in the way.
+ * With that estimate the search only has to look beyond the straight path
+ * when another zombie's reservations block it.
+ *
+ * The targets' own tiles are never reserved, so every zombie can still reach
+ * them. The field may have more than one root, in which case each zombie
+ * heads for the nearest. An instance holds the state of one search at a time, so it must not be
+ * shared between threads.
+ *
+ * David Silver, "Cooperative Pathfinding", AIIDE 2005.
+ */
+public class CooperativeSearch
+{
+  public static final int DEFAULT_WINDOW = 8;
+
+  public final NavGrid grid;
+  public final int window;
+
+  // States are tiles at time steps into the window, numbered
+  // t * grid.size + cell.
+  private final int[] costSoFar;
+  private final int[] parent;
+  private final int[] visited;
+  private final IndexedMinHeap open;
+  private int generation = 0;
+
+  private final int[] path;
+  private int pathLength = 0;
+  private int expansions = 0;
+
+  /**
+   * Creates a search with a window of DEFAULT_WINDOW steps.
+   *
+   * @param grid
+   *          The grid to search.
+   */
+  public CooperativeSearch(NavGrid grid)
+  {
+    this(grid, DEFAULT_WINDOW);
+  }
+
+  /**
+   * @param grid
+   *          The grid to search.
+   * @param window
+   *          How many steps ahead the search looks out for other zombies.
+   */
+  public CooperativeSearch(NavGrid grid, int window)
+  {
+    this.grid = grid;
+    this.window = window;
+    int states = grid.size * (window + 1);
+    costSoFar = new int[states];
+    parent = new int[states];
+    visited = new int[states];
+    open = new IndexedMinHeap(states);
+    path = new int[window + 1];
+  }
+
+  /**
+   * Finds the moves for the next window of steps that bring a zombie closest
+   * to the root of the field without running into the reservations of
+   * others. The path found is not reserved; the caller reserves it in the
+   * table once it has given up its old one.
+   *
+   * @param from
+   *          The cell the zombie is on.
+   * @param field
+   *          The flow field rooted at the target.
+   * @param table
+   *          The reservations of the other zombies. Its window must be at
+   *          least as long as this search's.
+   * @param owner
+   *          The zombie's owner id in the table.
+   * @param now
+   *          The current time step of the table.
+   * @return The number of moves to the target along the path found, counting
+   *         waits, or -1 if the zombie is outside of the field.
+   */
+  public int search(int from, FlowField field, ReservationTable table,
+      int owner, int now)
+  {
+    nextGeneration();
+    open.clear();
+    pathLength = 0;
+    expansions = 0;
+    if (field.distance(from) < 0)
+    {
+      return -1;
+    }
+    int size = grid.size;
+    visited[from] = generation;
+    costSoFar[from] = 0;
+    parent[from] = -1;
+    open.insert(from, field.distance(from));
+    int end = -1;
+    while (!open.isEmpty())
+    {
+      int state = open.poll();
+      int cell = state % size;
+      int t = state / size;
+      if (field.distance(cell) == 0 || t == window)
+      {
+        end = state;
+        break;
+      }
+      expansions++;
+      int time = now + t;
+      // Waiting on this tile is tried along with every move out of it.
+      int moves = grid.moves(cell) | (1 << 8);
+      while (moves != 0)
+      {
+        int d = Integer.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        int next = d == 8 ? cell : grid.neighbor(cell, d);
+        int left = field.distance(next);
+        if (left < 0)
+        {
+          continue;
+        }
+        if (left != 0 && table.isTaken(next, time + 1, owner))
+        {
+          continue;
+        }
+        // Two zombies can't swap tiles with each other.
+        int other = table.ownerAt(next, time);
+        if (next != cell && other != 0 && other != owner
+            && table.ownerAt(cell, time + 1) == other)
+        {
+          continue;
+        }
+        int nextState = (t + 1) * size + next;
+        int newCost = costSoFar[state] + 1;
+        if (visited[nextState] != generation)
+        {
+          visited[nextState] = generation;
+          costSoFar[nextState] = newCost;
+          parent[nextState] = state;
+          open.insert(nextState, newCost + left);
+        } else if (newCost < costSoFar[nextState] && open.contains(nextState))
+        {
+          costSoFar[nextState] = newCost;
+          parent[nextState] = state;
+          open.decreaseKey(nextState, newCost + left);
+        }
+      }
+    }
+    if (end < 0)
+    {
+      // Every way forward is taken, so the zombie stays where it is.
+      path[0] = from;
+      pathLength = 1;
+      return field.distance(from);
+    }
+    pathLength = end / size + 1;
+    for (int state = end, i = pathLength - 1; state >= 0; state = parent[state])
+    {
+      path[i--] = state % size;
+    }
+    return costSoFar[end] + field.distance(end % size);
+  }
+
+  private void nextGeneration()
+  {
+    generation++;
+    if (generation == Integer.MAX_VALUE)
+    {
+      Arrays.fill(visited, 0);
+      generation = 1;
+    }
+  }
+
+  /**
+   * @return The number of tiles in the path found by the last search, one for
+   *         each step starting with the present.
+   */
+  public int getPathLength()
+  {
+    return pathLength;
+  }
+
+  /**
+   * @return The tile the path found by the last search is on at a step into
+   *         the window.
+   */
+  public int getPathCell(int t)
+  {
+    return path[t];
+  }
+
+  /**
+   * @return The direction of the first move along the path found by the
+   *         last search, after any steps spent waiting, or -1 if the path
+   *         waits for the whole window.
+   */
+  public int firstDirection()
+  {
+    for (int t = 1; t < pathLength; t++)
+    {
+      if (path[t] != path[0])
+      {
+        return grid.directionBetween(path[0], path[t]);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return The number of states expanded by the last search.
+   */
+  public int getExpansions()
+  {
+    return expansions;
+  }
+}
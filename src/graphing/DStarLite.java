@@ -0,0 +1,388 @@
+package graphing;
+
+import java.util.Arrays;
+
+/**
+ * An incremental planner based on D* Lite, for one zombie chasing a target
+ * that moves. The search runs backward from the target, so the cost of every
+ * cell it has looked at is its distance to the target. That search tree is
+ * kept between calls. When the zombie moves, the keys of the queue are shifted
+ * instead of being rebuilt, and when the target moves to another tile only
+ * the cells whose distance changed because of it are searched again.
+ *
+ * The target is treated as being joined to its tile by a free move. Moving
+ * the target changes that one move from the old tile to the new one, which is
+ * the kind of change D* Lite is made to repair.
+ *
+ * The planner keeps arrays the size of the grid, so each zombie that uses one
+ * should keep its own instance, and an instance must not be shared between
+ * threads.
+ *
+ * Sven Koenig and Maxim Likhachev, "D* Lite", AAAI 2002.
+ */
+public class DStarLite implements PathPlanner
+{
+  private static final int INFINITY = Integer.MAX_VALUE / 4;
+  // km is added to every key. When it gets this large the search is started
+  // over so that the keys can't overflow.
+  private static final int MAX_KEY_MODIFIER = 1 << 24;
+
+  public final NavGrid grid;
+  private final int straightCost;
+  private final int diagonalCost;
+
+  private final int[] g;
+  private final int[] rhs;
+  private final int[] stamp;
+  private final IndexedMinHeap open;
+  private int generation = 0;
+
+  private int start = -1;
+  private int lastStart = -1;
+  private int goal = -1;
+  private int keyModifier = 0;
+  private int expansions = 0;
+  private int totalExpansions = 0;
+  private int replans = 0;
+  private boolean pathFound = false;
+
+  /**
+   * Creates a planner where every move costs 1, the same as the distance the
+   * zombies measure to the player.
+   *
+   * @param grid
+   *          The grid to search.
+   */
+  public DStarLite(NavGrid grid)
+  {
+    this(grid, 1, 1);
+  }
+
+  /**
+   * @param grid
+   *          The grid to search.
+   * @param straightCost
+   *          The cost of a move along x or z.
+   * @param diagonalCost
+   *          The cost of a diagonal move.
+   */
+  public DStarLite(NavGrid grid, int straightCost, int diagonalCost)
+  {
+    this.grid = grid;
+    this.straightCost = straightCost;
+    this.diagonalCost = diagonalCost;
+    g = new int[grid.size];
+    rhs = new int[grid.size];
+    stamp = new int[grid.size];
+    open = new IndexedMinHeap(grid.size);
+  }
+
+  @Override
+  public NavGrid getGrid()
+  {
+    return grid;
+  }
+
+  /**
+   * Brings the plan up to date after the zombie, the target or both have
+   * moved, and finds the cost from the zombie's cell to the target's.
+   *
+   * @param from
+   *          The cell the zombie is on.
+   * @param to
+   *          The cell the target is on.
+   * @return The cost of the path, or -1 if there is no path.
+   */
+  public int replan(int from, int to)
+  {
+    expansions = 0;
+    // The search tree is left as it is, so it can still be used once the
+    // target can be reached again.
+    pathFound = grid.isWalkable(from) && grid.isWalkable(to)
+        && grid.isConnected(from, to);
+    if (!pathFound)
+    {
+      return -1;
+    }
+    if (goal < 0 || !grid.isWalkable(goal))
+    {
+      reset(from, to);
+    } else
+    {
+      if (from != start)
+      {
+        keyModifier += heuristic(lastStart, from);
+        lastStart = from;
+        start = from;
+        if (keyModifier > MAX_KEY_MODIFIER)
+        {
+          reset(from, to);
+        }
+      }
+      if (to != goal)
+      {
+        int oldGoal = goal;
+        goal = to;
+        updateVertex(oldGoal);
+        updateVertex(goal);
+      }
+    }
+    computeShortestPath();
+    replans++;
+    totalExpansions += expansions;
+    pathFound = g(start) < INFINITY;
+    return pathFound ? g(start) : -1;
+  }
+
+  /**
+   * Replans and returns the number of moves in the path instead of its cost,
+   * so that the planner can be used like any other PathPlanner. The search
+   * tree is still kept between calls.
+   *
+   * @param from
+   *          The cell the zombie is on.
+   * @param to
+   *          The cell the target is on.
+   * @return The number of moves in the path, or -1 if there is no path.
+   */
+  @Override
+  public int search(int from, int to)
+  {
+    int cost = replan(from, to);
+    if (cost <= 0 || (straightCost == 1 && diagonalCost == 1))
+    {
+      return cost;
+    }
+    int steps = 0;
+    for (int cell = start; cell != goal && steps < grid.size; steps++)
+    {
+      cell = grid.neighbor(cell, next(cell));
+    }
+    return steps;
+  }
+
+  private void reset(int from, int to)
+  {
+    generation++;
+    if (generation == Integer.MAX_VALUE)
+    {
+      Arrays.fill(stamp, 0);
+      generation = 1;
+    }
+    open.clear();
+    keyModifier = 0;
+    start = from;
+    lastStart = from;
+    goal = to;
+    touch(goal);
+    rhs[goal] = 0;
+    open.insert(goal, key(goal));
+  }
+
+  private void computeShortestPath()
+  {
+    while (!open.isEmpty()
+        && (open.key(open.peek()) < key(start) || rhs(start) != g(start)))
+    {
+      int u = open.peek();
+      long oldKey = open.key(u);
+      long newKey = key(u);
+      expansions++;
+      if (oldKey < newKey)
+      {
+        open.update(u, newKey);
+      } else if (g(u) > rhs(u))
+      {
+        g[u] = rhs[u];
+        open.poll();
+        updateNeighbors(u);
+      } else
+      {
+        g[u] = INFINITY;
+        updateVertex(u);
+        updateNeighbors(u);
+      }
+    }
+  }
+
+  private void updateNeighbors(int cell)
+  {
+    int moves = grid.moves(cell);
+    while (moves != 0)
+    {
+      int d = Integer.numberOfTrailingZeros(moves);
+      moves &= moves - 1;
+      updateVertex(grid.neighbor(cell, d));
+    }
+  }
+
+  private void updateVertex(int cell)
+  {
+    touch(cell);
+    if (cell != goal)
+    {
+      int best = INFINITY;
+      int moves = grid.moves(cell);
+      while (moves != 0)
+      {
+        int d = Integer.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        int next = grid.neighbor(cell, d);
+        int cost = g(next) + cost(d);
+        if (cost < best)
+        {
+          best = cost;
+        }
+      }
+      rhs[cell] = best;
+    } else
+    {
+      rhs[cell] = 0;
+    }
+    boolean queued = open.contains(cell);
+    if (g[cell] != rhs[cell])
+    {
+      if (queued)
+      {
+        open.update(cell, key(cell));
+      } else
+      {
+        open.insert(cell, key(cell));
+      }
+    } else if (queued)
+    {
+      open.remove(cell);
+    }
+  }
+
+  /**
+   * Cells that haven't been looked at since the last reset start out with
+   * unknown cost.
+   */
+  private void touch(int cell)
+  {
+    if (stamp[cell] != generation)
+    {
+      stamp[cell] = generation;
+      g[cell] = INFINITY;
+      rhs[cell] = INFINITY;
+    }
+  }
+
+  private int g(int cell)
+  {
+    return stamp[cell] == generation ? g[cell] : INFINITY;
+  }
+
+  private int rhs(int cell)
+  {
+    return stamp[cell] == generation ? rhs[cell] : INFINITY;
+  }
+
+  /**
+   * The key of a cell packs the two parts of a D* Lite key into one long, so
+   * that comparing keys compares the first part and then the second.
+   */
+  private long key(int cell)
+  {
+    long least = Math.min(g(cell), rhs(cell));
+    long first = Math.min(least + heuristic(start, cell) + keyModifier,
+        INFINITY);
+    return (first << 32) | least;
+  }
+
+  private int cost(int direction)
+  {
+    return (direction & 1) == 0 ? straightCost : diagonalCost;
+  }
+
+  private int heuristic(int from, int to)
+  {
+    int dx = Math.abs(grid.cellX(from) - grid.cellX(to));
+    int dz = Math.abs(grid.cellZ(from) - grid.cellZ(to));
+    int diagonal = Math.min(dx, dz);
+    int straight = Math.max(dx, dz) - diagonal;
+    return diagonal * diagonalCost + straight * straightCost;
+  }
+
+  /**
+   * @return The number of cells taken off the queue by the last replan.
+   */
+  @Override
+  public int getExpansions()
+  {
+    return expansions;
+  }
+
+  /**
+   * @return The average number of cells taken off the queue per replan since
+   *         the planner was made.
+   */
+  public double getAverageExpansions()
+  {
+    return replans == 0 ? 0 : (double) totalExpansions / replans;
+  }
+
+  /**
+   * @return The direction of the first move along the current path, or -1 if
+   *         there is no move to make.
+   */
+  @Override
+  public int firstDirection()
+  {
+    return pathFound ? next(start) : -1;
+  }
+
+  /**
+   * Copies the cells of the current path into the given array, from the
+   * zombie to the target.
+   *
+   * @param path
+   *          The array to fill. It must be long enough to hold the path.
+   * @return The number of cells written.
+   */
+  @Override
+  public int getPath(int[] path)
+  {
+    if (!pathFound)
+    {
+      return 0;
+    }
+    int count = 0;
+    int cell = start;
+    path[count++] = cell;
+    while (cell != goal && count < path.length)
+    {
+      cell = grid.neighbor(cell, next(cell));
+      path[count++] = cell;
+    }
+    return count;
+  }
+
+  /**
+   * @return The direction from a cell to the neighbor that is cheapest to
+   *         reach the target through, or -1 if there is none.
+   */
+  private int next(int cell)
+  {
+    if (cell < 0 || cell == goal || g(cell) >= INFINITY)
+    {
+      return -1;
+    }
+    int best = -1;
+    int bestCost = INFINITY;
+    int moves = grid.moves(cell);
+    while (moves != 0)
+    {
+      int d = Integer.numberOfTrailingZeros(moves);
+      moves &= moves - 1;
+      int cost = g(grid.neighbor(cell, d)) + cost(d);
+      if (cost < bestCost)
+      {
+        bestCost = cost;
+        best = d;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,245 @@
+package graphing;
+
+import java.util.Arrays;
+
+/**
+ * A distance and direction field rooted at one or more cells of a NavGrid.
+ * Every move costs 1, so the field is filled in with a breadth first search
+ * out from all of the roots at once. Afterwards any cell can look up how many
+ * moves it is from the nearest root, which root that is, and which direction
+ * to move in to get one step closer to it, in constant time.
+ *
+ * The search stops at a maximum distance, so the cost of building the field
+ * depends on that radius and not on the size of the map. Cells farther away
+ * than that, or not connected to the root at all, report a distance of -1.
+ */
+public class FlowField
+{
+  public final NavGrid grid;
+  public final int maxDistance;
+
+  private final int[] distance;
+  private final byte[] direction;
+  private final int[] stamp;
+  private final int[] nearest;
+  private final int[] queue;
+  private int generation = 0;
+  private int[] roots = new int[0];
+  private int rootCount = 0;
+  private int[] newRoots = new int[0];
+  private final int[] single = new int[1];
+  private int cellsReached = 0;
+
+  /**
+   * @param grid
+   *          The grid the field covers.
+   * @param maxDistance
+   *          The farthest distance from the root, in moves, that the field is
+   *          filled in to.
+   */
+  public FlowField(NavGrid grid, int maxDistance)
+  {
+    this.grid = grid;
+    this.maxDistance = maxDistance;
+    distance = new int[grid.size];
+    direction = new byte[grid.size];
+    stamp = new int[grid.size];
+    nearest = new int[grid.size];
+    queue = new int[grid.size];
+  }
+
+  /**
+   * Roots the field at the given cell. The field is only recomputed if the
+   * root is different from the last one.
+   *
+   * @param rootCell
+   *          The cell to root the field at.
+   * @return True if the field was recomputed.
+   */
+  public boolean setRoot(int rootCell)
+  {
+    single[0] = rootCell;
+    return setRoots(single, 1);
+  }
+
+  /**
+   * Roots the field at the given cells. The order of the cells and any
+   * repeats don't matter, and cells that are walls are left out. The field is
+   * only recomputed if the set of roots is different from the last one.
+   *
+   * @param rootCells
+   *          The cells to root the field at.
+   * @param count
+   *          The number of cells in the array to use.
+   * @return True if the field was recomputed.
+   */
+  public boolean setRoots(int[] rootCells, int count)
+  {
+    if (newRoots.length < count)
+    {
+      newRoots = new int[count];
+    }
+    int newCount = 0;
+    for (int i = 0; i < count; i++)
+    {
+      int cell = rootCells[i];
+      if (cell >= 0 && grid.isWalkable(cell))
+      {
+        newRoots[newCount++] = cell;
+      }
+    }
+    Arrays.sort(newRoots, 0, newCount);
+    int unique = 0;
+    for (int i = 0; i < newCount; i++)
+    {
+      if (unique == 0 || newRoots[unique - 1] != newRoots[i])
+      {
+        newRoots[unique++] = newRoots[i];
+      }
+    }
+    if (unique == rootCount)
+    {
+      int same = 0;
+      while (same < unique && roots[same] == newRoots[same])
+      {
+        same++;
+      }
+      if (same == unique)
+      {
+        return false;
+      }
+    }
+    int[] swap = roots;
+    roots = newRoots;
+    rootCount = unique;
+    newRoots = swap;
+    compute();
+    return true;
+  }
+
+  private void compute()
+  {
+    generation++;
+    cellsReached = 0;
+    int head = 0;
+    int tail = 0;
+    for (int i = 0; i < rootCount; i++)
+    {
+      int root = roots[i];
+      stamp[root] = generation;
+      distance[root] = 0;
+      direction[root] = -1;
+      nearest[root] = root;
+      queue[tail++] = root;
+    }
+    while (head < tail)
+    {
+      int cell = queue[head++];
+      int nextDistance = distance[cell] + 1;
+      if (nextDistance > maxDistance)
+      {
+        continue;
+      }
+      int moves = grid.moves(cell);
+      while (moves != 0)
+      {
+        int d = Integer.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        int next = grid.neighbor(cell, d);
+        if (stamp[next] != generation)
+        {
+          stamp[next] = generation;
+          distance[next] = nextDistance;
+          // Moves are symmetric, so the way back to the root is the
+          // opposite of the move that reached this cell.
+          direction[next] = (byte) ((d + 4) & 7);
+          nearest[next] = nearest[cell];
+          queue[tail++] = next;
+        }
+      }
+    }
+    cellsReached = tail;
+  }
+
+  /**
+   * @return The cell the field is rooted at, or the lowest of them if it has
+   *         more than one root, or -1 if it has none.
+   */
+  public int getRoot()
+  {
+    return rootCount == 0 ? -1 : roots[0];
+  }
+
+  /**
+   * @return The number of cells the field is rooted at.
+   */
+  public int getRootCount()
+  {
+    return rootCount;
+  }
+
+  /**
+   * @return The root that is the fewest moves from the cell, or -1 if no root
+   *         can be reached within the maximum distance.
+   */
+  public int nearestRoot(int cell)
+  {
+    return stamp[cell] == generation ? nearest[cell] : -1;
+  }
+
+  /**
+   * @return The number of cells that were reached the last time the field was
+   *         computed.
+   */
+  public int getCellsReached()
+  {
+    return cellsReached;
+  }
+
+  /**
+   * @return The number of moves from the cell to the nearest root, or -1 if
+   *         no root can be reached within the maximum distance.
+   */
+  public int distance(int cell)
+  {
+    return stamp[cell] == generation ? distance[cell] : -1;
+  }
+
+  /**
+   * @return The direction to move in from the cell to get one step closer to
+   *         the nearest root, or -1 if the cell is a root or is not in the
+   *         field.
+   */
+  public int direction(int cell)
+  {
+    return stamp[cell] == generation ? direction[cell] : -1;
+  }
+
+  /**
+   * Copies the cells on the way from the given cell to the nearest root into
+   * the given array.
+   *
+   * @param from
+   *          The cell to start at.
+   * @param path
+   *          The array to fill. It must be long enough to hold the path.
+   * @return The number of cells written, including both ends, or 0 if the
+   *         cell is not in the field.
+   */
+  public int getPath(int from, int[] path)
+  {
+    if (distance(from) < 0)
+    {
+      return 0;
+    }
+    int count = 0;
+    int cell = from;
+    path[count++] = cell;
+    while (distance[cell] != 0)
+    {
+      cell = grid.neighbor(cell, direction[cell]);
+      path[count++] = cell;
+    }
+    return count;
+  }
+}
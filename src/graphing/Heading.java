@@ -1,6 +1,5 @@
 package graphing;
 
-import levels.Tile;
 /**
  * @author Jeffrey McCall
  * This class is used to find a new heading for a zombie
@@ -8,72 +7,55 @@ import levels.Tile;
  */
 public class Heading
 {
-  private int deltaX;
-  private int deltaZ;
-  //The heading in degrees that the zombie needs to 
+  // One shared heading for each whole degree, so that no new objects are
+  // created while zombies are chasing the player. The 8 directions of the
+  // NavGrid are every 45 degrees.
+  private static final Heading[] HEADINGS = new Heading[360];
+
+  static
+  {
+    for (int degrees = 0; degrees < 360; degrees++)
+    {
+      HEADINGS[degrees] = new Heading(degrees);
+    }
+  }
+
+  //The heading in degrees that the zombie needs to
   //travel in.
-  public int direction;
-  
-  /**
-   * Constructor for heading class where the difference in
-   * position between 2 tiles is calculated so that the angle
-   * between them can be determined.
-   * @param tile1
-   *        The first tile to be checked.
-   * @param tile2
-   *        The second tile to be checked.
-   */
-  public Heading(Tile tile1,Tile tile2)
+  public final int direction;
+
+  private Heading(int direction)
   {
-    deltaX=(int) (tile2.xPos-tile1.xPos);
-    deltaZ=(int) (tile2.zPos-tile1.zPos);
-    direction=getDirection(deltaX,deltaZ);
+    this.direction = direction;
   }
+
   /**
    * Can return 1 of 8 possible new headings for the zombie
    * to travel in.
-   * @param deltaX
-   *        The difference in x position between 2 tile locations.
-   * @param deltaZ
-   *        The difference in y position between the 2 tile locations.
+   * @param direction
+   *        One of the 8 directions of the NavGrid.
    * @return
-   *        The new angle for the zombie to travel in.
+   *        The heading for a move in that direction.
    */
-  private int getDirection(int deltaX,int deltaZ)
+  public static Heading forDirection(int direction)
   {
-    int zombieDirection=0;
-    if(deltaX==0 && deltaZ==1)
-    {
-      zombieDirection=0;
-    }
-    if(deltaX==1 && deltaZ==1)
-    {
-      zombieDirection=45;
-    }
-    if(deltaX==1 && deltaZ==0)
-    {
-      zombieDirection=90;
-    }
-    if(deltaX==1 && deltaZ==-1)
-    {
-      zombieDirection=135;
-    }
-    if(deltaX==0 && deltaZ==-1)
-    {
-      zombieDirection=180;
-    }
-    if(deltaX==-1 && deltaZ==-1)
-    {
-      zombieDirection=225;
-    }
-    if(deltaX==-1 && deltaZ==0)
-    {
-      zombieDirection=270;
-    }
-    if(deltaX==-1 && deltaZ==1)
-    {
-      zombieDirection=315;
-    }
-    return zombieDirection;  
+    return HEADINGS[direction * 45];
+  }
+
+  /**
+   * Gets the heading for walking along a line at any angle, rounded to the
+   * nearest degree.
+   * @param dx
+   *        How far the line goes along x.
+   * @param dz
+   *        How far the line goes along z.
+   * @return
+   *        The heading that walks along the line.
+   */
+  public static Heading forLine(double dx, double dz)
+  {
+    // A heading of 0 walks toward +z and 90 walks toward +x.
+    int degrees = (int) Math.round(Math.toDegrees(Math.atan2(dx, dz)));
+    return HEADINGS[(degrees + 360) % 360];
   }
 }
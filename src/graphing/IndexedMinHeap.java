@@ -0,0 +1,191 @@
+package graphing;
+
+/**
+ * A binary min-heap of int ids with long keys. The heap remembers where each
+ * id is stored, so the key of an id that is already in the heap can be changed
+ * in place, or the id removed, instead of adding a second copy. Nothing is
+ * allocated after the heap is constructed.
+ */
+public class IndexedMinHeap
+{
+  private final int[] heap;
+  private final int[] position;
+  private final long[] keys;
+  private int size = 0;
+
+  /**
+   * @param capacity
+   *          Ids stored in the heap must be between 0 and capacity - 1.
+   */
+  public IndexedMinHeap(int capacity)
+  {
+    heap = new int[capacity];
+    position = new int[capacity];
+    keys = new long[capacity];
+    for (int i = 0; i < capacity; i++)
+    {
+      position[i] = -1;
+    }
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean contains(int id)
+  {
+    return position[id] >= 0;
+  }
+
+  /**
+   * @return The key of an id that is in the heap.
+   */
+  public long key(int id)
+  {
+    return keys[id];
+  }
+
+  /**
+   * Adds an id that is not in the heap yet.
+   */
+  public void insert(int id, long key)
+  {
+    keys[id] = key;
+    heap[size] = id;
+    position[id] = size;
+    siftUp(size++);
+  }
+
+  /**
+   * Lowers the key of an id that is already in the heap.
+   */
+  public void decreaseKey(int id, long key)
+  {
+    keys[id] = key;
+    siftUp(position[id]);
+  }
+
+  /**
+   * Changes the key of an id that is already in the heap, whether the new key
+   * is larger or smaller.
+   */
+  public void update(int id, long key)
+  {
+    long old = keys[id];
+    keys[id] = key;
+    if (key < old)
+    {
+      siftUp(position[id]);
+    } else
+    {
+      siftDown(position[id]);
+    }
+  }
+
+  /**
+   * Removes an id that is in the heap.
+   */
+  public void remove(int id)
+  {
+    int index = position[id];
+    position[id] = -1;
+    size--;
+    if (index < size)
+    {
+      int last = heap[size];
+      heap[index] = last;
+      position[last] = index;
+      siftDown(index);
+      siftUp(position[last]);
+    }
+  }
+
+  /**
+   * @return The id with the smallest key, without removing it.
+   */
+  public int peek()
+  {
+    return heap[0];
+  }
+
+  /**
+   * Removes and returns the id with the smallest key.
+   */
+  public int poll()
+  {
+    int top = heap[0];
+    position[top] = -1;
+    size--;
+    if (size > 0)
+    {
+      heap[0] = heap[size];
+      position[heap[0]] = 0;
+      siftDown(0);
+    }
+    return top;
+  }
+
+  /**
+   * Empties the heap. Only the ids still in the heap are touched.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < size; i++)
+    {
+      position[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private void siftUp(int index)
+  {
+    int id = heap[index];
+    long key = keys[id];
+    while (index > 0)
+    {
+      int parent = (index - 1) >> 1;
+      int parentId = heap[parent];
+      if (keys[parentId] <= key)
+      {
+        break;
+      }
+      heap[index] = parentId;
+      position[parentId] = index;
+      index = parent;
+    }
+    heap[index] = id;
+    position[id] = index;
+  }
+
+  private void siftDown(int index)
+  {
+    int id = heap[index];
+    long key = keys[id];
+    int half = size >> 1;
+    while (index < half)
+    {
+      int child = 2 * index + 1;
+      int right = child + 1;
+      if (right < size && keys[heap[right]] < keys[heap[child]])
+      {
+        child = right;
+      }
+      int childId = heap[child];
+      if (key <= keys[childId])
+      {
+        break;
+      }
+      heap[index] = childId;
+      position[childId] = index;
+      index = child;
+    }
+    heap[index] = id;
+    position[id] = index;
+  }
+}
@@ -0,0 +1,401 @@
+package graphing;
+
+import java.util.Arrays;
+
+/**
+ * Jump Point Search over a NavGrid. Every tile costs the same to walk on, so
+ * most of the cells A* would put on the open list lie on runs of floor that
+ * have more than one path of the same cost through them. Instead of adding
+ * each of those cells, the search jumps along straight and diagonal lines and
+ * only stops at cells where the walls force the path to turn. Only those jump
+ * points are put on the open list.
+ *
+ * The jumps follow the same rules as the rest of the graph: a diagonal move is
+ * not allowed if either of the two tiles beside it is a wall, so the paths
+ * found never cut the corner of a wall. Paths cost the same as the ones found
+ * by AStarSearch with the same move costs.
+ *
+ * An instance holds the state of one search at a time, so it must not be
+ * shared between threads.
+ */
+public class JumpPointSearch implements PathPlanner
+{
+  /*
+   * The directions worth looking in after arriving at a cell by moving in
+   * each direction. After a diagonal move these are the diagonal and its two
+   * straight parts. After a straight move they are straight ahead, the two
+   * diagonals ahead and the two sides, which are where forced neighbors show
+   * up. The allowed moves of the cell are masked in when the mask is used.
+   */
+  private static final int[] PRUNED = new int[8];
+
+  static
+  {
+    for (int d = 0; d < 8; d++)
+    {
+      int mask = (1 << d) | (1 << ((d + 1) & 7)) | (1 << ((d + 7) & 7));
+      if ((d & 1) == 0)
+      {
+        mask |= (1 << ((d + 2) & 7)) | (1 << ((d + 6) & 7));
+      }
+      PRUNED[d] = mask;
+    }
+  }
+
+  public final NavGrid grid;
+  private final int straightCost;
+  private final int diagonalCost;
+
+  private final int[] costSoFar;
+  private final int[] parent;
+  private final int[] visited;
+  private final int[] closed;
+  private final IndexedMinHeap open;
+  private int generation = 0;
+
+  private int start = -1;
+  private int goal = -1;
+  private boolean found = false;
+  private int expansions = 0;
+  private int cellsScanned = 0;
+
+  /**
+   * Creates a search where a straight move costs 10 and a diagonal move costs
+   * 14, which is close to the real distance walked.
+   *
+   * @param grid
+   *          The grid to search.
+   */
+  public JumpPointSearch(NavGrid grid)
+  {
+    this(grid, 10, 14);
+  }
+
+  /**
+   * @param grid
+   *          The grid to search.
+   * @param straightCost
+   *          The cost of a move along x or z.
+   * @param diagonalCost
+   *          The cost of a diagonal move.
+   */
+  public JumpPointSearch(NavGrid grid, int straightCost, int diagonalCost)
+  {
+    this.grid = grid;
+    this.straightCost = straightCost;
+    this.diagonalCost = diagonalCost;
+    costSoFar = new int[grid.size];
+    parent = new int[grid.size];
+    visited = new int[grid.size];
+    closed = new int[grid.size];
+    open = new IndexedMinHeap(grid.size);
+  }
+
+  @Override
+  public NavGrid getGrid()
+  {
+    return grid;
+  }
+
+  /**
+   * Finds the cheapest path between two cells.
+   *
+   * @param from
+   *          The cell to start at.
+   * @param to
+   *          The cell to find a path to.
+   * @return The number of moves in the path, or -1 if there is no path.
+   */
+  @Override
+  public int search(int from, int to)
+  {
+    nextGeneration();
+    start = from;
+    goal = to;
+    found = false;
+    expansions = 0;
+    cellsScanned = 0;
+    open.clear();
+    if (!grid.isWalkable(from) || !grid.isWalkable(to)
+        || !grid.isConnected(from, to))
+    {
+      return -1;
+    }
+    visited[from] = generation;
+    costSoFar[from] = 0;
+    parent[from] = -1;
+    open.insert(from, heuristic(from, goal));
+    while (!open.isEmpty())
+    {
+      int current = open.poll();
+      if (current == to)
+      {
+        found = true;
+        break;
+      }
+      closed[current] = generation;
+      expansions++;
+      int directions = grid.moves(current);
+      if (parent[current] >= 0)
+      {
+        directions &= PRUNED[stepDirection(parent[current], current)];
+      }
+      while (directions != 0)
+      {
+        int d = Integer.numberOfTrailingZeros(directions);
+        directions &= directions - 1;
+        int jumpPoint = jump(grid.neighbor(current, d), d);
+        if (jumpPoint < 0 || closed[jumpPoint] == generation)
+        {
+          continue;
+        }
+        int newCost = costSoFar[current] + heuristic(current, jumpPoint);
+        if (visited[jumpPoint] != generation)
+        {
+          visited[jumpPoint] = generation;
+          costSoFar[jumpPoint] = newCost;
+          parent[jumpPoint] = current;
+          open.insert(jumpPoint, newCost + heuristic(jumpPoint, goal));
+        } else if (newCost < costSoFar[jumpPoint])
+        {
+          costSoFar[jumpPoint] = newCost;
+          parent[jumpPoint] = current;
+          open.decreaseKey(jumpPoint, newCost + heuristic(jumpPoint, goal));
+        }
+      }
+    }
+    return found ? pathLength() : -1;
+  }
+
+  /**
+   * Walks from a cell in one direction until reaching the goal, a jump point
+   * or a wall. The cell passed in has already been checked to be reachable
+   * with a move in that direction.
+   *
+   * @param cell
+   *          The first cell of the walk.
+   * @param d
+   *          The direction being walked in.
+   * @return The jump point that was reached, or -1 if there was none.
+   */
+  private int jump(int cell, int d)
+  {
+    int x = grid.cellX(cell);
+    int z = grid.cellZ(cell);
+    int dx = NavGrid.DX[d];
+    int dz = NavGrid.DZ[d];
+    while (true)
+    {
+      cellsScanned++;
+      if (cell == goal)
+      {
+        return cell;
+      }
+      if (dx != 0 && dz != 0)
+      {
+        // A diagonal walk stops where one of its straight parts would reach
+        // a jump point.
+        if (jumpsFrom(cell, (d + 7) & 7) || jumpsFrom(cell, (d + 1) & 7))
+        {
+          return cell;
+        }
+      } else if (dx != 0)
+      {
+        if (isOpen(x, z - 1) && !isOpen(x - dx, z - 1)
+            || isOpen(x, z + 1) && !isOpen(x - dx, z + 1))
+        {
+          return cell;
+        }
+      } else
+      {
+        if (isOpen(x - 1, z) && !isOpen(x - 1, z - dz)
+            || isOpen(x + 1, z) && !isOpen(x + 1, z - dz))
+        {
+          return cell;
+        }
+      }
+      if (!canStep(cell, d))
+      {
+        return -1;
+      }
+      cell = grid.neighbor(cell, d);
+      x += dx;
+      z += dz;
+    }
+  }
+
+  /**
+   * @return True if a straight walk from the cell in the given direction
+   *         reaches a jump point.
+   */
+  private boolean jumpsFrom(int cell, int d)
+  {
+    return canStep(cell, d) && jump(grid.neighbor(cell, d), d) >= 0;
+  }
+
+  private boolean canStep(int cell, int d)
+  {
+    return (grid.moves(cell) & (1 << d)) != 0;
+  }
+
+  private boolean isOpen(int x, int z)
+  {
+    int cell = grid.cell(z, x);
+    return cell >= 0 && grid.isWalkable(cell);
+  }
+
+  /**
+   * Octile distance between two cells. Between a cell and a jump point found
+   * from it this is the exact cost of the move, since the two are on one
+   * straight or diagonal line.
+   */
+  private int heuristic(int from, int to)
+  {
+    int dx = Math.abs(grid.cellX(from) - grid.cellX(to));
+    int dz = Math.abs(grid.cellZ(from) - grid.cellZ(to));
+    int diagonal = Math.min(dx, dz);
+    int straight = Math.max(dx, dz) - diagonal;
+    return diagonal * diagonalCost + straight * straightCost;
+  }
+
+  private void nextGeneration()
+  {
+    generation++;
+    if (generation == Integer.MAX_VALUE)
+    {
+      Arrays.fill(visited, 0);
+      Arrays.fill(closed, 0);
+      generation = 1;
+    }
+  }
+
+  /**
+   * @return True if the last search reached its goal.
+   */
+  public boolean pathFound()
+  {
+    return found;
+  }
+
+  /**
+   * @return The number of jump points that were expanded by the last search.
+   */
+  @Override
+  public int getExpansions()
+  {
+    return expansions;
+  }
+
+  /**
+   * @return The number of cells that were stepped over while jumping during
+   *         the last search.
+   */
+  public int getCellsScanned()
+  {
+    return cellsScanned;
+  }
+
+  /**
+   * @return The cost of the path found by the last search.
+   */
+  public int pathCost()
+  {
+    return found ? costSoFar[goal] : -1;
+  }
+
+  /**
+   * @return The number of moves in the path found by the last search.
+   */
+  public int pathLength()
+  {
+    if (!found)
+    {
+      return -1;
+    }
+    int steps = 0;
+    for (int cell = goal; cell != start; cell = parent[cell])
+    {
+      steps += moves(parent[cell], cell);
+    }
+    return steps;
+  }
+
+  /**
+   * @return The direction of the first move along the path found by the last
+   *         search, or -1 if there is no move to make.
+   */
+  @Override
+  public int firstDirection()
+  {
+    if (!found || start == goal)
+    {
+      return -1;
+    }
+    int cell = goal;
+    while (parent[cell] != start)
+    {
+      cell = parent[cell];
+    }
+    return stepDirection(start, cell);
+  }
+
+  /**
+   * Copies the cells of the path found by the last search into the given
+   * array, from the start to the goal. The cells between each pair of jump
+   * points are filled in.
+   *
+   * @param path
+   *          The array to fill. It must be long enough to hold the path.
+   * @return The number of cells written.
+   */
+  @Override
+  public int getPath(int[] path)
+  {
+    if (!found)
+    {
+      return 0;
+    }
+    int count = pathLength() + 1;
+    int i = count - 1;
+    int cell = goal;
+    path[i--] = cell;
+    while (cell != start)
+    {
+      int from = parent[cell];
+      int d = stepDirection(cell, from);
+      while (cell != from)
+      {
+        cell = grid.neighbor(cell, d);
+        path[i--] = cell;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return The number of moves on the line between two cells.
+   */
+  private int moves(int from, int to)
+  {
+    return Math.max(Math.abs(grid.cellX(from) - grid.cellX(to)),
+        Math.abs(grid.cellZ(from) - grid.cellZ(to)));
+  }
+
+  /**
+   * @return The direction of the first step on the line from one cell toward
+   *         another.
+   */
+  private int stepDirection(int from, int to)
+  {
+    int dx = Integer.signum(grid.cellX(to) - grid.cellX(from));
+    int dz = Integer.signum(grid.cellZ(to) - grid.cellZ(from));
+    for (int d = 0; d < 8; d++)
+    {
+      if (NavGrid.DX[d] == dx && NavGrid.DZ[d] == dz)
+      {
+        return d;
+      }
+    }
+    return -1;
+  }
+}
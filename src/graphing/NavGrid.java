@@ -0,0 +1,308 @@
+package graphing;
+
+import java.util.Arrays;
+
+import levels.Tile;
+
+/**
+ * Flat navigation grid used for zombie pathfinding. Every tile of the game
+ * board is a cell with an int id of z * width + x, where z is the first index
+ * into the game board and x is the second one. For each cell the grid stores
+ * a bitmask of the directions a zombie is allowed to move in, and a bitmask of
+ * the neighboring tiles that are walls. All of the arrays are filled in once
+ * when the grid is built and never change afterwards, so the grid can be read
+ * from any thread without locking.
+ *
+ * Directions are numbered 0-7 so that direction * 45 is the heading a zombie
+ * has to travel in to make that move. The compass names match the ones used
+ * by the wall flags of the old GraphNode: +z is south, +x is west.
+ */
+public class NavGrid
+{
+  public static final int S = 0;
+  public static final int SW = 1;
+  public static final int W = 2;
+  public static final int NW = 3;
+  public static final int N = 4;
+  public static final int NE = 5;
+  public static final int E = 6;
+  public static final int SE = 7;
+
+  // Change in x and z for each of the 8 directions.
+  public static final int[] DX = { 0, 1, 1, 1, 0, -1, -1, -1 };
+  public static final int[] DZ = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+  // Masks of the straight and the diagonal directions.
+  public static final int STRAIGHT_MASK = (1 << S) | (1 << W) | (1 << N)
+      | (1 << E);
+  public static final int DIAGONAL_MASK = (1 << SW) | (1 << NW) | (1 << NE)
+      | (1 << SE);
+
+  public final int width;
+  public final int height;
+  public final int size;
+
+  private final Tile[] tiles;
+  private final boolean[] walkable;
+  private final byte[] moves;
+  private final byte[] wallMask;
+  private final int[] offsets = new int[8];
+  private final int[] component;
+  // The number of separate areas of floor on the board.
+  public final int componentCount;
+  // The walls packed into bits, for checking straight lines across the board.
+  public final OccupancyGrid occupancy;
+
+  /**
+   * Builds the navigation grid for the given game board.
+   *
+   * @param gameBoard
+   *          The board of tiles, indexed as gameBoard[z][x].
+   */
+  public NavGrid(Tile[][] gameBoard)
+  {
+    height = gameBoard.length;
+    width = gameBoard[0].length;
+    size = width * height;
+    occupancy = new OccupancyGrid(gameBoard);
+    tiles = new Tile[size];
+    walkable = new boolean[size];
+    moves = new byte[size];
+    wallMask = new byte[size];
+    for (int d = 0; d < 8; d++)
+    {
+      offsets[d] = DZ[d] * width + DX[d];
+    }
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        int cell = z * width + x;
+        tiles[cell] = gameBoard[z][x];
+        walkable[cell] = !gameBoard[z][x].isWall;
+      }
+    }
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        int cell = z * width + x;
+        int walls = 0;
+        for (int d = 0; d < 8; d++)
+        {
+          if (isBlocked(x + DX[d], z + DZ[d]))
+          {
+            walls |= 1 << d;
+          }
+        }
+        wallMask[cell] = (byte) walls;
+        if (walkable[cell])
+        {
+          moves[cell] = (byte) allowedMoves(walls);
+        }
+      }
+    }
+    component = new int[size];
+    componentCount = labelComponents();
+  }
+
+  /**
+   * Gives every walkable cell the label of the area of floor it is in, so
+   * that two cells can be reached from each other exactly when they have the
+   * same label. Moves are the same in both directions, so one breadth first
+   * search per area finds all of it. Walls are labeled -1.
+   *
+   * @return The number of areas found.
+   */
+  private int labelComponents()
+  {
+    int[] queue = new int[size];
+    int count = 0;
+    Arrays.fill(component, -1);
+    for (int cell = 0; cell < size; cell++)
+    {
+      if (!walkable[cell] || component[cell] >= 0)
+      {
+        continue;
+      }
+      int head = 0;
+      int tail = 0;
+      component[cell] = count;
+      queue[tail++] = cell;
+      while (head < tail)
+      {
+        int current = queue[head++];
+        int allowed = moves[current] & 0xff;
+        while (allowed != 0)
+        {
+          int d = Integer.numberOfTrailingZeros(allowed);
+          allowed &= allowed - 1;
+          int next = current + offsets[d];
+          if (component[next] < 0)
+          {
+            component[next] = count;
+            queue[tail++] = next;
+          }
+        }
+      }
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * A move is allowed if the tile being moved to is not a wall. Diagonal moves
+   * are also not allowed if either of the two tiles on the sides of the move
+   * is a wall, since the zombie would be cutting through the corner of that
+   * wall.
+   *
+   * @param walls
+   *          The mask of neighboring tiles that are walls.
+   * @return The mask of allowed moves.
+   */
+  private static int allowedMoves(int walls)
+  {
+    int allowed = ~walls & 0xff;
+    for (int d = 1; d < 8; d += 2)
+    {
+      int side1 = 1 << (d - 1);
+      int side2 = 1 << ((d + 1) & 7);
+      if ((walls & (side1 | side2)) != 0)
+      {
+        allowed &= ~(1 << d);
+      }
+    }
+    return allowed;
+  }
+
+  private boolean isBlocked(int x, int z)
+  {
+    return x < 0 || z < 0 || x >= width || z >= height
+        || !walkable[z * width + x];
+  }
+
+  /**
+   * @return The cell id of the tile at gameBoard[z][x], or -1 if that is not
+   *         on the board.
+   */
+  public int cell(int z, int x)
+  {
+    if (x < 0 || z < 0 || x >= width || z >= height)
+    {
+      return -1;
+    }
+    return z * width + x;
+  }
+
+  /**
+   * @return The cell id of the tile containing the given world position, or
+   *         -1 if the position is not on the board.
+   */
+  public int cellAt(double xPos, double zPos)
+  {
+    return cell((int) Math.floor(zPos), (int) Math.floor(xPos));
+  }
+
+  public int cellX(int cell)
+  {
+    return cell % width;
+  }
+
+  public int cellZ(int cell)
+  {
+    return cell / width;
+  }
+
+  public Tile tile(int cell)
+  {
+    return tiles[cell];
+  }
+
+  public boolean isWalkable(int cell)
+  {
+    return walkable[cell];
+  }
+
+  /**
+   * @return The label of the area of floor the cell is in, or -1 if it is a
+   *         wall.
+   */
+  public int component(int cell)
+  {
+    return component[cell];
+  }
+
+  /**
+   * @return True if there is a path between the two cells. Both must be
+   *         walkable.
+   */
+  public boolean isConnected(int from, int to)
+  {
+    return component[from] >= 0 && component[from] == component[to];
+  }
+
+  /**
+   * @return The mask of directions a zombie standing on this cell can move in.
+   *         Wall cells have no moves.
+   */
+  public int moves(int cell)
+  {
+    return moves[cell] & 0xff;
+  }
+
+  public boolean canMove(int cell, int direction)
+  {
+    return (moves[cell] & (1 << direction)) != 0;
+  }
+
+  /**
+   * @return The cell reached by moving one step in the given direction. Only
+   *         valid if canMove() is true for that direction.
+   */
+  public int neighbor(int cell, int direction)
+  {
+    return cell + offsets[direction];
+  }
+
+  /**
+   * @return The mask of directions in which the neighboring tile is a wall or
+   *         off the board.
+   */
+  public int wallMask(int cell)
+  {
+    return wallMask[cell] & 0xff;
+  }
+
+  /**
+   * A corner tile is one that only touches a wall diagonally. These are the
+   * tiles that had the wallNE, wallNW, wallSE or wallSW flags set before.
+   * Zombies walking into one of these at a right angle tend to get caught on
+   * the corner of the wall.
+   *
+   * @return True if the cell is a corner tile or is a wall itself.
+   */
+  public boolean isCornerTile(int cell)
+  {
+    int walls = wallMask[cell] & 0xff;
+    return !walkable[cell]
+        || ((walls & DIAGONAL_MASK) != 0 && (walls & STRAIGHT_MASK) == 0);
+  }
+
+  /**
+   * @return The direction of the move from one cell to a neighboring one, or
+   *         -1 if the cells are not neighbors.
+   */
+  public int directionBetween(int from, int to)
+  {
+    int dx = cellX(to) - cellX(from);
+    int dz = cellZ(to) - cellZ(from);
+    for (int d = 0; d < 8; d++)
+    {
+      if (DX[d] == dx && DZ[d] == dz)
+      {
+        return d;
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,652 @@
+package graphing;
+
+import java.util.Arrays;
+
+import levels.HouseLayout;
+
+/**
+ * A navigation mesh of the floor of a level. The floor is split into
+ * rectangles, which are convex, so a straight line between any two points in
+ * one of them stays on the floor. Rectangles that share an edge are joined by
+ * a portal, the part of that edge they have in common. Paths are found by
+ * searching the rectangles instead of the tiles, and are then pulled tight
+ * through the portals they cross with the funnel algorithm, which gives the
+ * corners of a path that can be walked at any angle.
+ *
+ * When the layout of the level is known, every room and hallway that has no
+ * walls inside of it becomes one rectangle. The rest of the floor, and the
+ * whole floor of a level that was loaded from a file, is split by growing
+ * each rectangle from its first tile as far as the floor allows, either along
+ * x and then z or along z and then x, whichever covers more.
+ *
+ * Positions are in tiles, where the tile gameBoard[z][x] covers x to x + 1
+ * and z to z + 1. An instance holds the state of one search at a time, so it
+ * must not be shared between threads.
+ *
+ * Mikko Mononen, "Simple Stupid Funnel Algorithm", digestingduck.blogspot.com,
+ * 2010.
+ */
+public class NavMesh
+{
+  /**
+   * How far from the corners of walls the paths keep. This is a little more
+   * than the radius of a zombie.
+   */
+  public static final double DEFAULT_CLEARANCE = 0.25;
+
+  // Costs are stored in the heap as fixed point numbers with this scale.
+  private static final double KEY_SCALE = 1000;
+
+  public final NavGrid grid;
+  public final int polyCount;
+  public final int[] minX;
+  public final int[] maxX;
+  public final int[] minZ;
+  public final int[] maxZ;
+  private final double clearance;
+
+  // The polygon each tile is in, or -1 for walls.
+  private final int[] polyOfCell;
+  // The portals leaving polygon p are portalStart[p] to portalStart[p + 1] -
+  // 1. Each runs from (portalX0, portalZ0) to (portalX1, portalZ1) along the
+  // shared edge.
+  private final int[] portalStart;
+  private final int[] portalTarget;
+  private final int[] portalX0;
+  private final int[] portalZ0;
+  private final int[] portalX1;
+  private final int[] portalZ1;
+
+  private final double[] costSoFar;
+  private final double[] entryX;
+  private final double[] entryZ;
+  private final int[] cameFrom;
+  private final int[] cameThrough;
+  private final int[] visited;
+  private final IndexedMinHeap open;
+  private int generation = 0;
+
+  private final int[] polyPath;
+  private final double[] cornerX;
+  private final double[] cornerZ;
+  // The ends of the portal the funnel is narrowed to next.
+  private final double[] portal = new double[4];
+  private int cornerCount = 0;
+  private double pathLength = -1;
+  private int expansions = 0;
+
+  /**
+   * Builds the mesh with the default clearance.
+   *
+   * @param grid
+   *          The grid of the level.
+   * @param layout
+   *          The rooms and hallways the level was generated from, or null if
+   *          they are not known.
+   */
+  public NavMesh(NavGrid grid, HouseLayout layout)
+  {
+    this(grid, layout, DEFAULT_CLEARANCE);
+  }
+
+  /**
+   * @param grid
+   *          The grid of the level.
+   * @param layout
+   *          The rooms and hallways the level was generated from, or null if
+   *          they are not known.
+   * @param clearance
+   *          How far from the corners of walls the paths keep. This must be
+   *          less than half a tile.
+   */
+  public NavMesh(NavGrid grid, HouseLayout layout, double clearance)
+  {
+    this.grid = grid;
+    this.clearance = clearance;
+    polyOfCell = new int[grid.size];
+    Arrays.fill(polyOfCell, -1);
+    int[] x0 = new int[grid.size];
+    int[] x1 = new int[grid.size];
+    int[] z0 = new int[grid.size];
+    int[] z1 = new int[grid.size];
+    int count = 0;
+    if (layout != null)
+    {
+      for (int area = 0; area < layout.areaCount; area++)
+      {
+        if (isFreeFloor(layout.minX[area], layout.maxX[area],
+            layout.minZ[area], layout.maxZ[area]))
+        {
+          x0[count] = layout.minX[area];
+          x1[count] = layout.maxX[area];
+          z0[count] = layout.minZ[area];
+          z1[count] = layout.maxZ[area];
+          claim(count++, x0, x1, z0, z1);
+        }
+      }
+    }
+    for (int cell = 0; cell < grid.size; cell++)
+    {
+      if (grid.isWalkable(cell) && polyOfCell[cell] < 0)
+      {
+        int x = grid.cellX(cell);
+        int z = grid.cellZ(cell);
+        // Grow along x first and along z first, and keep the larger.
+        int right = x;
+        while (isFreeFloor(right + 1, right + 1, z, z))
+        {
+          right++;
+        }
+        int bottom = z;
+        while (isFreeFloor(x, right, bottom + 1, bottom + 1))
+        {
+          bottom++;
+        }
+        int tallBottom = z;
+        while (isFreeFloor(x, x, tallBottom + 1, tallBottom + 1))
+        {
+          tallBottom++;
+        }
+        int tallRight = x;
+        while (isFreeFloor(tallRight + 1, tallRight + 1, z, tallBottom))
+        {
+          tallRight++;
+        }
+        if ((tallRight - x + 1) * (tallBottom - z + 1) > (right - x + 1)
+            * (bottom - z + 1))
+        {
+          right = tallRight;
+          bottom = tallBottom;
+        }
+        x0[count] = x;
+        x1[count] = right;
+        z0[count] = z;
+        z1[count] = bottom;
+        claim(count++, x0, x1, z0, z1);
+      }
+    }
+    polyCount = count;
+    minX = Arrays.copyOf(x0, count);
+    maxX = Arrays.copyOf(x1, count);
+    minZ = Arrays.copyOf(z0, count);
+    maxZ = Arrays.copyOf(z1, count);
+
+    // Every portal lies along a tile edge of the polygon it leaves, so there
+    // can't be more of them than there are edges.
+    int edges = 0;
+    for (int p = 0; p < count; p++)
+    {
+      edges += 2 * (maxX[p] - minX[p] + 1) + 2 * (maxZ[p] - minZ[p] + 1);
+    }
+    portalStart = new int[count + 1];
+    int[] target = new int[edges];
+    int[] px0 = new int[edges];
+    int[] pz0 = new int[edges];
+    int[] px1 = new int[edges];
+    int[] pz1 = new int[edges];
+    int portals = 0;
+    for (int p = 0; p < count; p++)
+    {
+      portalStart[p] = portals;
+      // The edges above and below run along x, the ones to the sides along z.
+      portals = addPortals(portals, target, px0, pz0, px1, pz1, minX[p],
+          maxX[p], minZ[p] - 1, minZ[p], true);
+      portals = addPortals(portals, target, px0, pz0, px1, pz1, minX[p],
+          maxX[p], maxZ[p] + 1, maxZ[p] + 1, true);
+      portals = addPortals(portals, target, px0, pz0, px1, pz1, minZ[p],
+          maxZ[p], minX[p] - 1, minX[p], false);
+      portals = addPortals(portals, target, px0, pz0, px1, pz1, minZ[p],
+          maxZ[p], maxX[p] + 1, maxX[p] + 1, false);
+    }
+    portalStart[count] = portals;
+    portalTarget = Arrays.copyOf(target, portals);
+    portalX0 = Arrays.copyOf(px0, portals);
+    portalZ0 = Arrays.copyOf(pz0, portals);
+    portalX1 = Arrays.copyOf(px1, portals);
+    portalZ1 = Arrays.copyOf(pz1, portals);
+
+    costSoFar = new double[count];
+    entryX = new double[count];
+    entryZ = new double[count];
+    cameFrom = new int[count];
+    cameThrough = new int[count];
+    visited = new int[count];
+    open = new IndexedMinHeap(count);
+    polyPath = new int[count];
+    cornerX = new double[count + 2];
+    cornerZ = new double[count + 2];
+  }
+
+  /**
+   * @return True if every tile in the box is floor that isn't in a polygon
+   *         yet.
+   */
+  private boolean isFreeFloor(int fromX, int toX, int fromZ, int toZ)
+  {
+    for (int z = fromZ; z <= toZ; z++)
+    {
+      for (int x = fromX; x <= toX; x++)
+      {
+        int cell = grid.cell(z, x);
+        if (cell < 0 || !grid.isWalkable(cell) || polyOfCell[cell] >= 0)
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private void claim(int poly, int[] x0, int[] x1, int[] z0, int[] z1)
+  {
+    for (int z = z0[poly]; z <= z1[poly]; z++)
+    {
+      for (int x = x0[poly]; x <= x1[poly]; x++)
+      {
+        polyOfCell[grid.cell(z, x)] = poly;
+      }
+    }
+  }
+
+  /**
+   * Adds the portals along one side of a polygon. The tiles just outside that
+   * side are walked, and each run of them that is in the same neighboring
+   * polygon becomes one portal.
+   *
+   * @param from
+   *          The first tile along the side.
+   * @param to
+   *          The last tile along the side.
+   * @param across
+   *          The row or column of tiles just outside the side.
+   * @param line
+   *          Where the side lies, on the axis across it.
+   * @param alongX
+   *          True if the side runs along x.
+   * @return The number of portals after the new ones are added.
+   */
+  private int addPortals(int portals, int[] target, int[] px0, int[] pz0,
+      int[] px1, int[] pz1, int from, int to, int across, int line,
+      boolean alongX)
+  {
+    int runStart = from;
+    int runPoly = -1;
+    for (int i = from; i <= to + 1; i++)
+    {
+      int poly = -1;
+      if (i <= to)
+      {
+        int cell = alongX ? grid.cell(across, i) : grid.cell(i, across);
+        poly = cell < 0 ? -1 : polyOfCell[cell];
+      }
+      if (poly != runPoly)
+      {
+        if (runPoly >= 0)
+        {
+          target[portals] = runPoly;
+          px0[portals] = alongX ? runStart : line;
+          pz0[portals] = alongX ? line : runStart;
+          px1[portals] = alongX ? i : line;
+          pz1[portals] = alongX ? line : i;
+          portals++;
+        }
+        runPoly = poly;
+        runStart = i;
+      }
+    }
+    return portals;
+  }
+
+  /**
+   * @return The polygon the point is in, or -1 if it is not on the floor.
+   */
+  public int polyAt(double x, double z)
+  {
+    int cell = grid.cellAt(x, z);
+    return cell < 0 ? -1 : polyOfCell[cell];
+  }
+
+  /**
+   * @return The polygon a tile is in, or -1 if the tile is a wall.
+   */
+  public int polyOfCell(int cell)
+  {
+    return polyOfCell[cell];
+  }
+
+  /**
+   * Finds a path between two points on the floor. The polygons are searched
+   * with A*, where the cost of crossing a polygon is the distance between
+   * the middles of the portals it is entered and left by, and the polygons
+   * that were found are then pulled tight with the funnel algorithm.
+   *
+   * @param startX
+   *          The x coordinate to start at.
+   * @param startZ
+   *          The z coordinate to start at.
+   * @param goalX
+   *          The x coordinate to find a path to.
+   * @param goalZ
+   *          The z coordinate to find a path to.
+   * @return The number of corners in the path, counting both ends, or -1 if
+   *         there is no path.
+   */
+  public int findPath(double startX, double startZ, double goalX, double goalZ)
+  {
+    cornerCount = 0;
+    pathLength = -1;
+    expansions = 0;
+    int start = polyAt(startX, startZ);
+    int goal = polyAt(goalX, goalZ);
+    if (start < 0 || goal < 0 || !grid.isConnected(
+        grid.cellAt(startX, startZ), grid.cellAt(goalX, goalZ)))
+    {
+      return -1;
+    }
+    if (!searchPolygons(start, goal, startX, startZ, goalX, goalZ))
+    {
+      return -1;
+    }
+    int polys = 0;
+    for (int p = goal; p >= 0; p = cameFrom[p])
+    {
+      polyPath[polys++] = p;
+    }
+    // The polygons were collected from the goal back to the start.
+    for (int i = 0, j = polys - 1; i < j; i++, j--)
+    {
+      int swap = polyPath[i];
+      polyPath[i] = polyPath[j];
+      polyPath[j] = swap;
+    }
+    funnel(polys, startX, startZ, goalX, goalZ);
+    pathLength = 0;
+    for (int i = 1; i < cornerCount; i++)
+    {
+      pathLength += Math.hypot(cornerX[i] - cornerX[i - 1],
+          cornerZ[i] - cornerZ[i - 1]);
+    }
+    return cornerCount;
+  }
+
+  private boolean searchPolygons(int start, int goal, double startX,
+      double startZ, double goalX, double goalZ)
+  {
+    generation++;
+    if (generation == Integer.MAX_VALUE)
+    {
+      Arrays.fill(visited, 0);
+      generation = 1;
+    }
+    open.clear();
+    visited[start] = generation;
+    costSoFar[start] = 0;
+    entryX[start] = startX;
+    entryZ[start] = startZ;
+    cameFrom[start] = -1;
+    open.insert(start, key(Math.hypot(goalX - startX, goalZ - startZ)));
+    while (!open.isEmpty())
+    {
+      int current = open.poll();
+      if (current == goal)
+      {
+        return true;
+      }
+      expansions++;
+      for (int i = portalStart[current]; i < portalStart[current + 1]; i++)
+      {
+        int next = portalTarget[i];
+        double midX = (portalX0[i] + portalX1[i]) / 2.0;
+        double midZ = (portalZ0[i] + portalZ1[i]) / 2.0;
+        double newCost = costSoFar[current] + Math.hypot(
+            midX - entryX[current], midZ - entryZ[current]);
+        if (next == goal)
+        {
+          newCost += Math.hypot(goalX - midX, goalZ - midZ);
+        }
+        if (visited[next] != generation || newCost < costSoFar[next])
+        {
+          double priority = newCost
+              + (next == goal ? 0 : Math.hypot(goalX - midX, goalZ - midZ));
+          if (visited[next] != generation)
+          {
+            visited[next] = generation;
+            costSoFar[next] = newCost;
+            open.insert(next, key(priority));
+          } else if (open.contains(next))
+          {
+            costSoFar[next] = newCost;
+            open.decreaseKey(next, key(priority));
+          } else
+          {
+            continue;
+          }
+          entryX[next] = midX;
+          entryZ[next] = midZ;
+          cameFrom[next] = current;
+          cameThrough[next] = i;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static long key(double cost)
+  {
+    return (long) (cost * KEY_SCALE);
+  }
+
+  /**
+   * Runs the funnel algorithm over the portals between the polygons of the
+   * path. The funnel is the wedge from the last corner, the apex, through
+   * the portals crossed since then. Each portal narrows it, and when one
+   * side would cross over the other, the end of that other side becomes the
+   * next corner.
+   */
+  private void funnel(int polys, double startX, double startZ, double goalX,
+      double goalZ)
+  {
+    cornerX[0] = startX;
+    cornerZ[0] = startZ;
+    cornerCount = 1;
+    double apexX = startX;
+    double apexZ = startZ;
+    double leftX = startX;
+    double leftZ = startZ;
+    double rightX = startX;
+    double rightZ = startZ;
+    int leftIndex = 0;
+    int rightIndex = 0;
+    // Portal i is the one from polyPath[i - 1] to polyPath[i]; the last one
+    // is the goal itself.
+    for (int i = 1; i <= polys; i++)
+    {
+      if (i < polys)
+      {
+        portalBetween(polyPath[i - 1], polyPath[i], portal);
+      } else
+      {
+        portal[0] = goalX;
+        portal[1] = goalZ;
+        portal[2] = goalX;
+        portal[3] = goalZ;
+      }
+      double nextLeftX = portal[0];
+      double nextLeftZ = portal[1];
+      double nextRightX = portal[2];
+      double nextRightZ = portal[3];
+
+      // Narrow the right side of the funnel.
+      if (cross(apexX, apexZ, rightX, rightZ, nextRightX, nextRightZ) >= 0)
+      {
+        if ((apexX == rightX && apexZ == rightZ)
+            || cross(apexX, apexZ, leftX, leftZ, nextRightX, nextRightZ) < 0)
+        {
+          rightX = nextRightX;
+          rightZ = nextRightZ;
+          rightIndex = i;
+        } else
+        {
+          // The right side crossed the left, so the left is a corner.
+          addCorner(leftX, leftZ);
+          apexX = leftX;
+          apexZ = leftZ;
+          rightX = apexX;
+          rightZ = apexZ;
+          rightIndex = leftIndex;
+          i = leftIndex;
+          continue;
+        }
+      }
+
+      // Narrow the left side of the funnel.
+      if (cross(apexX, apexZ, leftX, leftZ, nextLeftX, nextLeftZ) <= 0)
+      {
+        if ((apexX == leftX && apexZ == leftZ)
+            || cross(apexX, apexZ, rightX, rightZ, nextLeftX, nextLeftZ) > 0)
+        {
+          leftX = nextLeftX;
+          leftZ = nextLeftZ;
+          leftIndex = i;
+        } else
+        {
+          // The left side crossed the right, so the right is a corner.
+          addCorner(rightX, rightZ);
+          apexX = rightX;
+          apexZ = rightZ;
+          leftX = apexX;
+          leftZ = apexZ;
+          leftIndex = rightIndex;
+          i = rightIndex;
+          continue;
+        }
+      }
+    }
+    addCorner(goalX, goalZ);
+  }
+
+  private void addCorner(double x, double z)
+  {
+    if (cornerX[cornerCount - 1] != x || cornerZ[cornerCount - 1] != z)
+    {
+      cornerX[cornerCount] = x;
+      cornerZ[cornerCount] = z;
+      cornerCount++;
+    }
+  }
+
+  /**
+   * Writes the ends of the portal the search took from one polygon to the
+   * next into the array as left x, left z, right x, right z, seen when
+   * walking through it. Each end is moved away from the walls that meet at
+   * it by the clearance, so that paths pulled tight around it don't brush
+   * the wall.
+   */
+  private void portalBetween(int from, int to, double[] portal)
+  {
+    int i = cameThrough[to];
+    // The direction of travel is from the middle of one polygon toward the
+    // middle of the other.
+    double travelX = (minX[to] + maxX[to]) - (minX[from] + maxX[from]);
+    double travelZ = (minZ[to] + maxZ[to]) - (minZ[from] + maxZ[from]);
+    int left = 0;
+    int right = 2;
+    if (travelX * (portalZ0[i] - portalZ1[i])
+        - travelZ * (portalX0[i] - portalX1[i]) < 0)
+    {
+      left = 2;
+      right = 0;
+    }
+    pushAway(portalX0[i], portalZ0[i], portal, left);
+    pushAway(portalX1[i], portalZ1[i], portal, right);
+  }
+
+  /**
+   * Moves a corner where tiles meet away from whichever of the four tiles
+   * around it are walls, by the clearance along x and along z. A corner
+   * with no walls around it is left where it is.
+   *
+   * @param x
+   *          The x coordinate of the corner.
+   * @param z
+   *          The z coordinate of the corner.
+   * @param out
+   *          The array to write the moved x and z to.
+   * @param index
+   *          Where in the array to write them.
+   */
+  private void pushAway(int x, int z, double[] out, int index)
+  {
+    int awayX = 0;
+    int awayZ = 0;
+    for (int tileZ = z - 1; tileZ <= z; tileZ++)
+    {
+      for (int tileX = x - 1; tileX <= x; tileX++)
+      {
+        int cell = grid.cell(tileZ, tileX);
+        if (cell < 0 || !grid.isWalkable(cell))
+        {
+          // Away from the wall is from its middle toward the corner.
+          awayX += tileX < x ? 1 : -1;
+          awayZ += tileZ < z ? 1 : -1;
+        }
+      }
+    }
+    out[index] = x + Integer.signum(awayX) * clearance;
+    out[index + 1] = z + Integer.signum(awayZ) * clearance;
+  }
+
+  /**
+   * @return More than 0 if the point (cx, cz) is to the left of the line from
+   *         (ox, oz) through (ax, az), less than 0 if it is to the right, and
+   *         0 if it is on the line.
+   */
+  private static double cross(double ox, double oz, double ax, double az,
+      double cx, double cz)
+  {
+    return (ax - ox) * (cz - oz) - (az - oz) * (cx - ox);
+  }
+
+  /**
+   * @return The number of corners in the path found by the last search.
+   */
+  public int getCornerCount()
+  {
+    return cornerCount;
+  }
+
+  /**
+   * @return The x coordinate of a corner of the path found by the last
+   *         search, where corner 0 is the start.
+   */
+  public double getCornerX(int corner)
+  {
+    return cornerX[corner];
+  }
+
+  /**
+   * @return The z coordinate of a corner of the path found by the last
+   *         search, where corner 0 is the start.
+   */
+  public double getCornerZ(int corner)
+  {
+    return cornerZ[corner];
+  }
+
+  /**
+   * @return The length of the path found by the last search, in tiles, or -1
+   *         if there was no path.
+   */
+  public double getPathLength()
+  {
+    return pathLength;
+  }
+
+  /**
+   * @return The number of polygons expanded by the last search.
+   */
+  public int getExpansions()
+  {
+    return expansions;
+  }
+}
@@ -0,0 +1,206 @@
+package graphing;
+
+import levels.Tile;
+
+/**
+ * The walls of the game board packed into bits, one per tile, for checking
+ * whether a straight line crosses any wall. Every row of the board is kept
+ * as a run of longs, and so is every column, so a line is checked a row or a
+ * column at a time: the tiles it crosses in one row or column are next to
+ * each other, and up to 64 of them are tested with one mask of a word.
+ * Shallow lines are walked by rows and steep lines by columns, so each step
+ * covers as many tiles as it can.
+ *
+ * A line is blocked if it touches a wall anywhere, including only along the
+ * edge or at the corner of one, and everything off the board counts as wall.
+ * The grid never changes after it is built, so it can be read from any
+ * thread.
+ */
+public class OccupancyGrid
+{
+  public final int width;
+  public final int height;
+
+  private final int rowWords;
+  private final int columnWords;
+  // Bit x of row z is set in rows[z * rowWords + x / 64] if gameBoard[z][x]
+  // is a wall, and bit z of column x in columns[x * columnWords + z / 64].
+  private final long[] rows;
+  private final long[] columns;
+
+  /**
+   * @param gameBoard
+   *          The board of tiles, indexed as gameBoard[z][x].
+   */
+  public OccupancyGrid(Tile[][] gameBoard)
+  {
+    height = gameBoard.length;
+    width = height == 0 ? 0 : gameBoard[0].length;
+    rowWords = (width + 63) >> 6;
+    columnWords = (height + 63) >> 6;
+    rows = new long[height * rowWords];
+    columns = new long[width * columnWords];
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        if (gameBoard[z][x].isWall)
+        {
+          rows[z * rowWords + (x >> 6)] |= 1L << x;
+          columns[x * columnWords + (z >> 6)] |= 1L << z;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return True if gameBoard[z][x] is a wall or is off the board.
+   */
+  public boolean isBlocked(int z, int x)
+  {
+    if (z < 0 || x < 0 || z >= height || x >= width)
+    {
+      return true;
+    }
+    return (rows[z * rowWords + (x >> 6)] & (1L << x)) != 0;
+  }
+
+  /**
+   * @return True if none of the tiles from gameBoard[z][fromX] to
+   *         gameBoard[z][toX] are walls, and all of them are on the board.
+   */
+  public boolean rowClear(int z, int fromX, int toX)
+  {
+    if (z < 0 || z >= height || fromX < 0 || toX >= width)
+    {
+      return false;
+    }
+    return runClear(rows, z * rowWords, fromX, toX);
+  }
+
+  /**
+   * @return True if none of the tiles from gameBoard[fromZ][x] to
+   *         gameBoard[toZ][x] are walls, and all of them are on the board.
+   */
+  public boolean columnClear(int x, int fromZ, int toZ)
+  {
+    if (x < 0 || x >= width || fromZ < 0 || toZ >= height)
+    {
+      return false;
+    }
+    return runClear(columns, x * columnWords, fromZ, toZ);
+  }
+
+  private static boolean runClear(long[] bits, int start, int from, int to)
+  {
+    int first = from >> 6;
+    int last = to >> 6;
+    // Ones from bit from up, and from bit to down.
+    long low = -1L << from;
+    long high = -1L >>> (63 - (to & 63));
+    if (first == last)
+    {
+      return (bits[start + first] & low & high) == 0;
+    }
+    if ((bits[start + first] & low) != 0 || (bits[start + last] & high) != 0)
+    {
+      return false;
+    }
+    for (int word = first + 1; word < last; word++)
+    {
+      if (bits[start + word] != 0)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return True if the line between the centers of gameBoard[fromZ][fromX]
+   *         and gameBoard[toZ][toX] doesn't touch a wall.
+   */
+  public boolean lineOfSight(int fromZ, int fromX, int toZ, int toX)
+  {
+    return lineOfSight(fromX + .5, fromZ + .5, toX + .5, toZ + .5);
+  }
+
+  /**
+   * Checks a line between two points, where the tile gameBoard[z][x] covers
+   * the square from (x, z) to (x + 1, z + 1).
+   *
+   * @return True if the line doesn't touch a wall.
+   */
+  public boolean lineOfSight(double x0, double z0, double x1, double z1)
+  {
+    if (Math.abs(x1 - x0) >= Math.abs(z1 - z0))
+    {
+      return linesClear(rows, rowWords, height, width, x0, z0, x1, z1);
+    }
+    return linesClear(columns, columnWords, width, height, z0, x0, z1, x1);
+  }
+
+  /**
+   * Walks a line one line of bits at a time, where u runs along the lines and
+   * v picks the line. For rows u is x and v is z; for columns they swap.
+   */
+  private static boolean linesClear(long[] bits, int words, int lines,
+      int length, double u0, double v0, double u1, double v1)
+  {
+    double minV = Math.min(v0, v1);
+    double maxV = Math.max(v0, v1);
+    // Every line whose square the segment touches, even along an edge.
+    int firstLine = ceil(minV) - 1;
+    int lastLine = floor(maxV);
+    if (firstLine < 0 || lastLine >= lines)
+    {
+      return false;
+    }
+    double slope = v1 == v0 ? 0 : (u1 - u0) / (v1 - v0);
+    // The lines are walked from the start of the segment, since a wall is
+    // usually found close to where a blocked line starts.
+    int step = v1 < v0 ? -1 : 1;
+    int end = step > 0 ? lastLine : firstLine;
+    for (int line = step > 0 ? firstLine : lastLine; line != end + step;
+        line += step)
+    {
+      // Where the segment starts and ends along this line.
+      double ua;
+      double ub;
+      if (v1 == v0)
+      {
+        ua = u0;
+        ub = u1;
+      } else
+      {
+        ua = u0 + (Math.max(minV, line) - v0) * slope;
+        ub = u0 + (Math.min(maxV, line + 1) - v0) * slope;
+      }
+      int from = ceil(Math.min(ua, ub)) - 1;
+      int to = floor(Math.max(ua, ub));
+      if (from < 0 || to >= length)
+      {
+        return false;
+      }
+      if (!runClear(bits, line * words, from, to))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Math.floor and Math.ceil are slow next to the rest of a check, and the
+  // numbers here always fit in an int.
+  private static int floor(double value)
+  {
+    int whole = (int) value;
+    return value < whole ? whole - 1 : whole;
+  }
+
+  private static int ceil(double value)
+  {
+    int whole = (int) value;
+    return value > whole ? whole + 1 : whole;
+  }
+}
@@ -0,0 +1,70 @@
+package graphing;
+
+/**
+ * A way of finding paths on a NavGrid. A planner object holds the state of
+ * one search at a time, so each thread, and each zombie if the planner keeps
+ * state between searches, needs its own instance. The grid itself is shared.
+ *
+ * New planners are made available to the game by adding them to the
+ * PlannerRegistry.
+ */
+public interface PathPlanner
+{
+  /**
+   * @return The grid this planner searches.
+   */
+  NavGrid getGrid();
+
+  /**
+   * Finds a path between two cells.
+   *
+   * @param from
+   *          The cell to start at.
+   * @param to
+   *          The cell to find a path to.
+   * @return The number of moves in the path, or -1 if there is no path.
+   */
+  int search(int from, int to);
+
+  /**
+   * @return The direction of the first move along the path found by the last
+   *         search, or -1 if there is no move to make.
+   */
+  int firstDirection();
+
+  /**
+   * Copies the cells of the path found by the last search into the given
+   * array, from the start to the goal.
+   *
+   * @param path
+   *          The array to fill. It must be long enough to hold the path.
+   * @return The number of cells written.
+   */
+  int getPath(int[] path);
+
+  /**
+   * @return The number of cells expanded by the last search.
+   */
+  int getExpansions();
+
+  /**
+   * Finds the path for a request and copies it into a result that can be
+   * handed to another thread.
+   *
+   * @param request
+   *          The request to find a path for. Its grid must be the grid of
+   *          this planner.
+   * @return The path that was found.
+   */
+  default <T> PathResult<T> plan(PathRequest<T> request)
+  {
+    int steps = search(request.from, request.to);
+    if (steps < 0)
+    {
+      return new PathResult<>(request, -1, -1, new int[0]);
+    }
+    int[] path = new int[steps + 1];
+    getPath(path);
+    return new PathResult<>(request, steps, firstDirection(), path);
+  }
+}
@@ -0,0 +1,35 @@
+package graphing;
+
+/**
+ * A request for a path between two cells of a grid, made to the
+ * PlanningService. Requests can't be changed once they are made, so they can
+ * be handed between threads safely.
+ *
+ * @param <T>
+ *          The type of the object the path is for.
+ */
+public class PathRequest<T>
+{
+  public final T owner;
+  public final NavGrid grid;
+  public final int from;
+  public final int to;
+
+  /**
+   * @param owner
+   *          The object the path is for.
+   * @param grid
+   *          The grid to search.
+   * @param from
+   *          The cell to start at.
+   * @param to
+   *          The cell to find a path to.
+   */
+  public PathRequest(T owner, NavGrid grid, int from, int to)
+  {
+    this.owner = owner;
+    this.grid = grid;
+    this.from = from;
+    this.to = to;
+  }
+}
@@ -0,0 +1,45 @@
+package graphing;
+
+/**
+ * A path found by the PlanningService for a PathRequest.
+ *
+ * @param <T>
+ *          The type of the object the path is for.
+ */
+public class PathResult<T>
+{
+  public final PathRequest<T> request;
+  // The number of moves in the path, or -1 if there is no path.
+  public final int steps;
+  // The direction of the first move, or -1 if there is no move to make.
+  public final int firstDirection;
+  // The cells of the path from the start to the goal.
+  public final int[] path;
+
+  /**
+   * @param request
+   *          The request the path was found for.
+   * @param steps
+   *          The number of moves in the path, or -1 if there is no path.
+   * @param firstDirection
+   *          The direction of the first move.
+   * @param path
+   *          The cells of the path from the start to the goal.
+   */
+  public PathResult(PathRequest<T> request, int steps, int firstDirection,
+      int[] path)
+  {
+    this.request = request;
+    this.steps = steps;
+    this.firstDirection = firstDirection;
+    this.path = path;
+  }
+
+  /**
+   * @return True if a path was found.
+   */
+  public boolean pathFound()
+  {
+    return steps >= 0;
+  }
+}
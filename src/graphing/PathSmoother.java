@@ -0,0 +1,168 @@
+package graphing;
+
+/**
+ * Turns a path of tile steps into a few straight lines by string pulling.
+ * Starting from one end, the path is followed for as long as a straight line
+ * from the start can reach the next cell, and the last cell that could be
+ * reached becomes a waypoint. A zombie walking toward the waypoint at any
+ * angle then covers in one heading what would otherwise be several changes
+ * between the eight directions of the grid.
+ *
+ * A line can only be walked if every tile it passes over is floor, including
+ * the tiles beside it by the given clearance, so that a zombie of that radius
+ * following it doesn't rub against the walls. Where a line passes exactly
+ * through the corner of a tile, both tiles beside the corner have to be floor,
+ * the same as for a diagonal move on the grid. The lines are checked against
+ * the OccupancyGrid of the board, many tiles at a time.
+ *
+ * The smoother keeps no state between calls, so one instance can be shared.
+ */
+public class PathSmoother
+{
+  /**
+   * How far to each side of a line the floor has to be clear. This is a
+   * little more than the radius of a zombie.
+   */
+  public static final double DEFAULT_CLEARANCE = 0.25;
+  /**
+   * The most cells ahead on a path that are checked for a waypoint, so that
+   * the cost of steering doesn't grow with the length of the path.
+   */
+  public static final int MAX_LOOKAHEAD = 32;
+
+  private static final double EPSILON = 1e-9;
+
+  public final NavGrid grid;
+  private final double clearance;
+
+  /**
+   * Creates a smoother that keeps lines DEFAULT_CLEARANCE away from walls.
+   *
+   * @param grid
+   *          The grid the paths are on.
+   */
+  public PathSmoother(NavGrid grid)
+  {
+    this(grid, DEFAULT_CLEARANCE);
+  }
+
+  /**
+   * @param grid
+   *          The grid the paths are on.
+   * @param clearance
+   *          How far to each side of a line the floor has to be clear. This
+   *          must be less than half a tile.
+   */
+  public PathSmoother(NavGrid grid, double clearance)
+  {
+    this.grid = grid;
+    this.clearance = clearance;
+  }
+
+  /**
+   * Pulls a whole path tight.
+   *
+   * @param path
+   *          The cells of the path, from start to end.
+   * @param count
+   *          The number of cells in the path.
+   * @param waypoints
+   *          The array to fill with the waypoints, from the start of the path
+   *          to its end. It must be at least as long as the path.
+   * @return The number of waypoints written, including both ends.
+   */
+  public int smooth(int[] path, int count, int[] waypoints)
+  {
+    if (count == 0)
+    {
+      return 0;
+    }
+    int written = 0;
+    int anchor = 0;
+    waypoints[written++] = path[0];
+    while (anchor < count - 1)
+    {
+      int next = anchor + 1;
+      int limit = Math.min(count - 1, anchor + MAX_LOOKAHEAD);
+      while (next < limit && lineOfSight(path[anchor], path[next + 1]))
+      {
+        next++;
+      }
+      waypoints[written++] = path[next];
+      anchor = next;
+    }
+    return written;
+  }
+
+  /**
+   * Finds the furthest cell along a path that can be walked to in a straight
+   * line from a point. Only cells up to MAX_LOOKAHEAD past the first one are
+   * looked at, and the search stops at the first cell that can't be reached.
+   *
+   * @param x
+   *          The x coordinate of the point, in tiles.
+   * @param z
+   *          The z coordinate of the point, in tiles.
+   * @param path
+   *          The cells of the path.
+   * @param first
+   *          The index of the first cell of the path to look at.
+   * @param count
+   *          The index just past the last cell of the path.
+   * @return The index of the furthest cell that can be reached, or -1 if
+   *         not even the first can.
+   */
+  public int furthestVisible(double x, double z, int[] path, int first,
+      int count)
+  {
+    int furthest = -1;
+    int limit = Math.min(count, first + MAX_LOOKAHEAD + 1);
+    for (int i = first; i < limit; i++)
+    {
+      if (!lineOfSight(x, z, grid.cellX(path[i]) + 0.5,
+          grid.cellZ(path[i]) + 0.5))
+      {
+        break;
+      }
+      furthest = i;
+    }
+    return furthest;
+  }
+
+  /**
+   * @return True if the line between the centers of two cells can be walked.
+   */
+  public boolean lineOfSight(int from, int to)
+  {
+    return lineOfSight(grid.cellX(from) + 0.5, grid.cellZ(from) + 0.5,
+        grid.cellX(to) + 0.5, grid.cellZ(to) + 0.5);
+  }
+
+  /**
+   * @return True if the line between two points, and the lines beside it by
+   *         the clearance, only cross floor.
+   */
+  public boolean lineOfSight(double x0, double z0, double x1, double z1)
+  {
+    double dx = x1 - x0;
+    double dz = z1 - z0;
+    double length = Math.sqrt(dx * dx + dz * dz);
+    if (length < EPSILON)
+    {
+      return isOpen((int) Math.floor(x0), (int) Math.floor(z0));
+    }
+    // The offset to the side of the line, at a right angle to it.
+    double ox = -dz / length * clearance;
+    double oz = dx / length * clearance;
+    OccupancyGrid occupancy = grid.occupancy;
+    return occupancy.lineOfSight(x0, z0, x1, z1)
+        && occupancy.lineOfSight(x0 + ox, z0 + oz, x1 + ox, z1 + oz)
+        && occupancy.lineOfSight(x0 - ox, z0 - oz, x1 - ox, z1 - oz);
+  }
+
+  private boolean isOpen(int x, int z)
+  {
+    int cell = grid.cell(z, x);
+    return cell >= 0 && grid.isWalkable(cell);
+  }
+}
@@ -0,0 +1,200 @@
+package graphing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Keeps the path planners the zombies can use and picks the one to use for
+ * the current level. The planner is named in the settings, and is A* unless
+ * another one is asked for.
+ *
+ * The settings can also ask for "auto", in which case each planner is timed
+ * on a short made-up chase when the level loads and the fastest one is used.
+ * Only the planners that count the cost of a move the same way as A* are
+ * timed, since the length of a path decides how far a zombie thinks the
+ * player is, and so whether it gives chase; picking by time must not change
+ * how the game plays. The timing holds up the loading of the level, and its
+ * result is remembered for each size of map, so it is only done once per
+ * size.
+ */
+public class PlannerRegistry
+{
+  public static final String AUTO = "auto";
+  public static final String DEFAULT = "astar";
+
+  // The ways the planners count the cost of a move: every move costs the
+  // same, or diagonal moves cost more, close to the real distance walked.
+  public static final String UNIT_COSTS = "unit";
+  public static final String OCTILE_COSTS = "octile";
+
+  // How many chases, and how many updates in each, are timed per planner.
+  private static final int CALIBRATION_CHASES = 4;
+  private static final int CALIBRATION_UPDATES = 50;
+
+  private static final LinkedHashMap<String, Function<NavGrid, PathPlanner>> planners = new LinkedHashMap<>();
+  private static final HashMap<String, String> costModels = new HashMap<>();
+  private static final HashMap<String, String> calibrated = new HashMap<>();
+  private static String selected = DEFAULT;
+
+  static
+  {
+    register("astar", UNIT_COSTS, AStarSearch::new);
+    register("jps", OCTILE_COSTS, JumpPointSearch::new);
+    register("dstar", UNIT_COSTS, DStarLite::new);
+  }
+
+  /**
+   * Adds a planner that can be picked for a level.
+   *
+   * @param name
+   *          The name the planner is picked by in the settings.
+   * @param costModel
+   *          How the planner counts the cost of a move, UNIT_COSTS or
+   *          OCTILE_COSTS.
+   * @param factory
+   *          Makes a new planner for a grid.
+   */
+  public static synchronized void register(String name, String costModel,
+      Function<NavGrid, PathPlanner> factory)
+  {
+    planners.put(name, factory);
+    costModels.put(name, costModel);
+  }
+
+  /**
+   * @return The names of all of the planners that can be picked.
+   */
+  public static synchronized ArrayList<String> getNames()
+  {
+    return new ArrayList<>(planners.keySet());
+  }
+
+  /**
+   * @return The name of the planner picked for the current level.
+   */
+  public static synchronized String getSelected()
+  {
+    return selected;
+  }
+
+  /**
+   * Picks the planner to use for a grid. This is called when a level loads.
+   *
+   * @param grid
+   *          The grid of the level.
+   * @param configured
+   *          The name of the planner to use, or "auto" to time the ones that
+   *          count costs the same way as A* and use the fastest. A name that
+   *          isn't known picks A*.
+   * @return The name of the planner that was picked.
+   */
+  public static synchronized String select(NavGrid grid, String configured)
+  {
+    if (planners.containsKey(configured))
+    {
+      selected = configured;
+      return selected;
+    }
+    if (!AUTO.equals(configured))
+    {
+      selected = DEFAULT;
+      return selected;
+    }
+    String size = grid.width + "x" + grid.height;
+    String fastest = calibrated.get(size);
+    if (fastest == null)
+    {
+      fastest = calibrate(grid);
+      calibrated.put(size, fastest);
+    }
+    selected = fastest;
+    return selected;
+  }
+
+  /**
+   * Makes a new instance of the planner picked for the current level.
+   *
+   * @param grid
+   *          The grid the planner will search.
+   * @return The new planner.
+   */
+  public static synchronized PathPlanner create(NavGrid grid)
+  {
+    return planners.get(selected).apply(grid);
+  }
+
+  /**
+   * Times each planner with the same cost model as A* on the same chases,
+   * where the target wanders around and the chaser follows its path and asks
+   * for a new one every update, and returns the name of the fastest.
+   */
+  private static String calibrate(NavGrid grid)
+  {
+    int[] floor = new int[grid.size];
+    int floorCount = 0;
+    for (int cell = 0; cell < grid.size; cell++)
+    {
+      if (grid.isWalkable(cell))
+      {
+        floor[floorCount++] = cell;
+      }
+    }
+    String fastest = DEFAULT;
+    if (floorCount < 2)
+    {
+      return fastest;
+    }
+    String costModel = costModels.get(DEFAULT);
+    long fastestTime = Long.MAX_VALUE;
+    for (String name : planners.keySet())
+    {
+      if (!costModel.equals(costModels.get(name)))
+      {
+        continue;
+      }
+      // The first run warms up the code, only the second is timed.
+      runChases(planners.get(name), grid, floor, floorCount);
+      long time = runChases(planners.get(name), grid, floor, floorCount);
+      if (time < fastestTime)
+      {
+        fastestTime = time;
+        fastest = name;
+      }
+    }
+    return fastest;
+  }
+
+  private static long runChases(Function<NavGrid, PathPlanner> factory,
+      NavGrid grid, int[] floor, int floorCount)
+  {
+    Random rand = new Random(351);
+    long start = System.nanoTime();
+    for (int chase = 0; chase < CALIBRATION_CHASES; chase++)
+    {
+      PathPlanner planner = factory.apply(grid);
+      int chaser = floor[rand.nextInt(floorCount)];
+      int target = floor[rand.nextInt(floorCount)];
+      for (int update = 0; update < CALIBRATION_UPDATES; update++)
+      {
+        int moves = grid.moves(target);
+        if (moves != 0 && rand.nextInt(10) == 0)
+        {
+          int d;
+          do
+          {
+            d = rand.nextInt(8);
+          } while ((moves & (1 << d)) == 0);
+          target = grid.neighbor(target, d);
+        }
+        if (planner.search(chaser, target) > 0 && rand.nextInt(5) == 0)
+        {
+          chaser = grid.neighbor(chaser, planner.firstDirection());
+        }
+      }
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -0,0 +1,120 @@
+package graphing;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Finds paths on a pool of worker threads so that long searches don't hold up
+ * the animation thread. Requests are handed to the pool with submit, and
+ * finished paths are put on a lock-free queue that the game loop empties with
+ * poll once per tick.
+ *
+ * The grid is never written to by a search, so the workers can all search it
+ * at once. Each worker keeps its own JumpPointSearch for the grid it was last
+ * given, which holds all of the state of a search.
+ *
+ * @param <T>
+ *          The type of the objects paths are found for.
+ */
+public class PlanningService<T>
+{
+  private final ExecutorService workers;
+  private final ConcurrentLinkedQueue<PathResult<T>> completed = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<JumpPointSearch> searches = new ThreadLocal<>();
+
+  /**
+   * Creates a service with one worker for each core but the one the game
+   * loop runs on.
+   */
+  public PlanningService()
+  {
+    this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+  }
+
+  /**
+   * @param threads
+   *          The number of worker threads.
+   */
+  public PlanningService(int threads)
+  {
+    workers = Executors.newFixedThreadPool(threads, runnable ->
+    {
+      Thread thread = new Thread(runnable, "path planner");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Asks for a path to be found. The path will show up in poll once it has
+   * been found.
+   *
+   * @param owner
+   *          The object the path is for.
+   * @param grid
+   *          The grid to search.
+   * @param from
+   *          The cell to start at.
+   * @param to
+   *          The cell to find a path to.
+   * @return The request that was made, or null if the service has been shut
+   *         down.
+   */
+  public PathRequest<T> submit(T owner, NavGrid grid, int from, int to)
+  {
+    PathRequest<T> request = new PathRequest<>(owner, grid, from, to);
+    try
+    {
+      workers.execute(() ->
+      {
+        PathResult<T> result;
+        try
+        {
+          result = plan(request);
+        } catch (RuntimeException e)
+        {
+          // The owner is still waiting on the request, so it is answered
+          // with no path rather than not at all.
+          e.printStackTrace();
+          result = new PathResult<>(request, -1, -1, new int[0]);
+        }
+        completed.add(result);
+      });
+    } catch (RejectedExecutionException e)
+    {
+      return null;
+    }
+    return request;
+  }
+
+  /**
+   * @return The next path that has been found, or null if there are none
+   *         waiting.
+   */
+  public PathResult<T> poll()
+  {
+    return completed.poll();
+  }
+
+  /**
+   * Stops the workers. Requests that haven't been started are dropped.
+   */
+  public void shutdown()
+  {
+    workers.shutdownNow();
+    completed.clear();
+  }
+
+  private PathResult<T> plan(PathRequest<T> request)
+  {
+    JumpPointSearch search = searches.get();
+    if (search == null || search.grid != request.grid)
+    {
+      search = new JumpPointSearch(request.grid);
+      searches.set(search);
+    }
+    return search.plan(request);
+  }
+}
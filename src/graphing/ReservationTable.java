@@ -0,0 +1,99 @@
+package graphing;
+
+/**
+ * A shared table of which tiles are taken at which time steps, for zombies
+ * that plan their moves around each other. A time step is how long a zombie
+ * takes to walk across one tile. Only the steps within a short window of the
+ * present can be reserved, so the table is a ring of that many layers of the
+ * grid, and reservations from steps that have gone by are simply written
+ * over.
+ *
+ * The table is used from the animation thread only.
+ */
+public class ReservationTable
+{
+  public final NavGrid grid;
+  public final int window;
+
+  // owner[layer * size + cell] is the owner of the tile at the step stored in
+  // step[] for that slot, or 0 if it isn't taken.
+  private final int[] owner;
+  private final int[] step;
+
+  /**
+   * @param grid
+   *          The grid the reservations are on.
+   * @param window
+   *          The most steps ahead of the present that can be reserved.
+   */
+  public ReservationTable(NavGrid grid, int window)
+  {
+    this.grid = grid;
+    this.window = window;
+    owner = new int[grid.size * (window + 1)];
+    step = new int[grid.size * (window + 1)];
+  }
+
+  private int slot(int cell, int time)
+  {
+    return (time % (window + 1)) * grid.size + cell;
+  }
+
+  /**
+   * @param cell
+   *          The tile to check.
+   * @param time
+   *          The time step to check.
+   * @return The owner of the tile at that step, or 0 if it isn't taken.
+   */
+  public int ownerAt(int cell, int time)
+  {
+    int slot = slot(cell, time);
+    return step[slot] == time ? owner[slot] : 0;
+  }
+
+  /**
+   * @return True if the tile is taken at that step by someone other than the
+   *         given owner.
+   */
+  public boolean isTaken(int cell, int time, int by)
+  {
+    int holder = ownerAt(cell, time);
+    return holder != 0 && holder != by;
+  }
+
+  /**
+   * Takes a tile at a time step, unless someone else already has it.
+   *
+   * @param cell
+   *          The tile to take.
+   * @param time
+   *          The time step to take it at.
+   * @param by
+   *          The owner taking it. This must not be 0.
+   * @return False if someone else already has it.
+   */
+  public boolean reserve(int cell, int time, int by)
+  {
+    int slot = slot(cell, time);
+    if (step[slot] == time && owner[slot] != 0 && owner[slot] != by)
+    {
+      return false;
+    }
+    step[slot] = time;
+    owner[slot] = by;
+    return true;
+  }
+
+  /**
+   * Gives up a tile at a time step, if the given owner has it.
+   */
+  public void release(int cell, int time, int by)
+  {
+    int slot = slot(cell, time);
+    if (step[slot] == time && owner[slot] == by)
+    {
+      owner[slot] = 0;
+    }
+  }
+}
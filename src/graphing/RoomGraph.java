@@ -0,0 +1,546 @@
+package graphing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import levels.HouseLayout;
+
+/**
+ * An abstract graph of the rooms and hallways of a level, used to plan long
+ * paths without searching the whole grid. The nodes of the graph are the
+ * openings between areas, called portals here, and the edges are the walks
+ * across an area from one of its portals to another. The cost of every one of
+ * those walks is found once when the graph is built.
+ *
+ * A query searches the portals to find which one to head for first, then only
+ * finds the path on the grid inside the area the search starts in. The cost
+ * of the query depends on the number of portals and the size of the two areas
+ * at the ends of the path, not on the size of the map.
+ *
+ * Costs are in moves, the same as the zombies' distance to the player. The
+ * cost of a long path is an estimate, since a portal is more than one tile
+ * wide and the tile a path crosses it on can change the cost by a move.
+ *
+ * An instance holds the state of one query at a time, so it must not be
+ * shared between threads.
+ */
+public class RoomGraph
+{
+  public final NavGrid grid;
+  public final int areaCount;
+  public final int portalCount;
+
+  private final int[] area;
+  private final int[] portal;
+  private final int[][] portalCells;
+  private final int[][] portalAreas;
+  private final int[][] areaPortals;
+  private final int[][] areaCosts;
+
+  // Scratch space for the searches on the grid.
+  private final int[] cellStamp;
+  private final int[] cellDistance;
+  private final byte[] cellDirection;
+  private final int[] queue;
+  private int cellGeneration = 0;
+
+  // Scratch space for the search over the portals. Node portalCount stands
+  // for the goal.
+  private final IndexedMinHeap open;
+  private final int[] nodeCost;
+  private final int[] nodeParent;
+  private final int[] nodeArea;
+  private final int[] goalCost;
+  private final boolean[] settled;
+
+  private int start = -1;
+  private int goal = -1;
+  private int firstTarget = -1;
+  private int firstArea = -1;
+  private int estimate = -1;
+  private int expansions = 0;
+
+  /**
+   * Builds the graph for a grid from the layout of the level it was made
+   * from.
+   *
+   * @param grid
+   *          The grid of the level.
+   * @param layout
+   *          The rooms and hallways of the level.
+   */
+  public RoomGraph(NavGrid grid, HouseLayout layout)
+  {
+    this.grid = grid;
+    this.areaCount = layout.areaCount;
+    area = new int[grid.size];
+    portal = new int[grid.size];
+    cellStamp = new int[grid.size];
+    cellDistance = new int[grid.size];
+    cellDirection = new byte[grid.size];
+    queue = new int[grid.size];
+    Arrays.fill(area, -1);
+    Arrays.fill(portal, -1);
+
+    for (int a = 0; a < layout.areaCount; a++)
+    {
+      for (int z = layout.minZ[a]; z <= layout.maxZ[a]; z++)
+      {
+        for (int x = layout.minX[a]; x <= layout.maxX[a]; x++)
+        {
+          int cell = grid.cell(z, x);
+          if (cell >= 0 && grid.isWalkable(cell) && area[cell] < 0)
+          {
+            area[cell] = a;
+          }
+        }
+      }
+    }
+
+    // Every floor tile that is not inside an area is part of an opening in a
+    // wall. Touching tiles of the same opening make up one portal.
+    ArrayList<int[]> cellsOfPortals = new ArrayList<>();
+    for (int cell = 0; cell < grid.size; cell++)
+    {
+      if (grid.isWalkable(cell) && area[cell] < 0 && portal[cell] < 0)
+      {
+        int id = cellsOfPortals.size();
+        int head = 0;
+        int tail = 0;
+        portal[cell] = id;
+        queue[tail++] = cell;
+        while (head < tail)
+        {
+          int current = queue[head++];
+          int moves = grid.moves(current);
+          while (moves != 0)
+          {
+            int d = Integer.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            int next = grid.neighbor(current, d);
+            if (area[next] < 0 && portal[next] < 0)
+            {
+              portal[next] = id;
+              queue[tail++] = next;
+            }
+          }
+        }
+        cellsOfPortals.add(Arrays.copyOf(queue, tail));
+      }
+    }
+    portalCount = cellsOfPortals.size();
+    portalCells = cellsOfPortals.toArray(new int[portalCount][]);
+
+    portalAreas = new int[portalCount][];
+    int[] areaPortalCount = new int[areaCount];
+    int[] touching = new int[areaCount];
+    for (int p = 0; p < portalCount; p++)
+    {
+      int count = 0;
+      for (int cell : portalCells[p])
+      {
+        int moves = grid.moves(cell);
+        while (moves != 0)
+        {
+          int d = Integer.numberOfTrailingZeros(moves);
+          moves &= moves - 1;
+          int a = area[grid.neighbor(cell, d)];
+          if (a >= 0 && !contains(touching, count, a))
+          {
+            touching[count++] = a;
+          }
+        }
+      }
+      portalAreas[p] = Arrays.copyOf(touching, count);
+      for (int i = 0; i < count; i++)
+      {
+        areaPortalCount[touching[i]]++;
+      }
+    }
+    areaPortals = new int[areaCount][];
+    for (int a = 0; a < areaCount; a++)
+    {
+      areaPortals[a] = new int[areaPortalCount[a]];
+      areaPortalCount[a] = 0;
+    }
+    for (int p = 0; p < portalCount; p++)
+    {
+      for (int a : portalAreas[p])
+      {
+        areaPortals[a][areaPortalCount[a]++] = p;
+      }
+    }
+
+    // The cost of crossing each area between each pair of its portals.
+    areaCosts = new int[areaCount][];
+    for (int a = 0; a < areaCount; a++)
+    {
+      int k = areaPortals[a].length;
+      areaCosts[a] = new int[k * k];
+      for (int i = 0; i < k; i++)
+      {
+        int[] sources = portalCells[areaPortals[a][i]];
+        searchArea(sources, sources.length, a);
+        for (int j = 0; j < k; j++)
+        {
+          areaCosts[a][i * k + j] = distanceTo(portalCells[areaPortals[a][j]]);
+        }
+      }
+    }
+
+    open = new IndexedMinHeap(portalCount + 1);
+    nodeCost = new int[portalCount + 1];
+    nodeParent = new int[portalCount + 1];
+    nodeArea = new int[portalCount + 1];
+    goalCost = new int[portalCount];
+    settled = new boolean[portalCount + 1];
+  }
+
+  private static boolean contains(int[] values, int count, int value)
+  {
+    for (int i = 0; i < count; i++)
+    {
+      if (values[i] == value)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The area the cell is inside of, or -1 if it is a wall or part of
+   *         a portal.
+   */
+  public int areaOf(int cell)
+  {
+    return area[cell];
+  }
+
+  /**
+   * @return The portal the cell is part of, or -1 if it is not in a portal.
+   */
+  public int portalOf(int cell)
+  {
+    return portal[cell];
+  }
+
+  /**
+   * @return The cost of crossing an area from one of its portals to another,
+   *         or -1 if the two can't be reached from each other inside the
+   *         area.
+   */
+  public int crossingCost(int area, int fromPortal, int toPortal)
+  {
+    int i = indexOf(areaPortals[area], fromPortal);
+    int j = indexOf(areaPortals[area], toPortal);
+    if (i < 0 || j < 0)
+    {
+      return -1;
+    }
+    return areaCosts[area][i * areaPortals[area].length + j];
+  }
+
+  private static int indexOf(int[] values, int value)
+  {
+    for (int i = 0; i < values.length; i++)
+    {
+      if (values[i] == value)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Plans a path between two cells. The portals are searched to find the
+   * cheapest way through the areas, then the path to the first portal on the
+   * way is found inside the area the start is in.
+   *
+   * Two cells in the same area, or cells that are not in an area or a portal,
+   * can't be planned this way. For those this returns -1 and the path should
+   * be found with a search of the grid.
+   *
+   * @param from
+   *          The cell to start at.
+   * @param to
+   *          The cell to find a path to.
+   * @return The estimated number of moves to the goal, or -1 if no path was
+   *         found through the portals.
+   */
+  public int search(int from, int to)
+  {
+    start = from;
+    goal = to;
+    firstTarget = -1;
+    firstArea = -1;
+    estimate = -1;
+    expansions = 0;
+    if (!grid.isWalkable(from) || !grid.isWalkable(to)
+        || !grid.isConnected(from, to))
+    {
+      return -1;
+    }
+    int startArea = area[from];
+    int goalArea = area[to];
+    int startPortal = portal[from];
+    int goalPortal = portal[to];
+    if ((startArea < 0 && startPortal < 0) || (goalArea < 0 && goalPortal < 0)
+        || (startArea >= 0 && startArea == goalArea)
+        || (startPortal >= 0 && startPortal == goalPortal))
+    {
+      return -1;
+    }
+    int goalNode = portalCount;
+    open.clear();
+    Arrays.fill(nodeCost, Integer.MAX_VALUE);
+    Arrays.fill(settled, false);
+
+    // How far the goal is from each portal of its area.
+    Arrays.fill(goalCost, -1);
+    if (goalArea >= 0)
+    {
+      queue[0] = to;
+      searchArea(queue, 1, goalArea);
+      for (int p : areaPortals[goalArea])
+      {
+        goalCost[p] = distanceTo(portalCells[p]);
+      }
+    }
+
+    // How far the start is from each portal of its area.
+    if (startArea >= 0)
+    {
+      queue[0] = from;
+      searchArea(queue, 1, startArea);
+      for (int p : areaPortals[startArea])
+      {
+        int cost = distanceTo(portalCells[p]);
+        if (cost >= 0)
+        {
+          relax(p, cost, -1, startArea);
+        }
+      }
+    } else
+    {
+      relax(startPortal, 0, -1, -1);
+    }
+
+    while (!open.isEmpty())
+    {
+      int node = open.poll();
+      settled[node] = true;
+      if (node == goalNode || node == goalPortal)
+      {
+        goalNode = node;
+        break;
+      }
+      expansions++;
+      int cost = nodeCost[node];
+      if (goalCost[node] >= 0)
+      {
+        relax(portalCount, cost + goalCost[node], node, goalArea);
+      }
+      for (int a : portalAreas[node])
+      {
+        int[] portals = areaPortals[a];
+        int k = portals.length;
+        int i = indexOf(portals, node);
+        for (int j = 0; j < k; j++)
+        {
+          int crossing = areaCosts[a][i * k + j];
+          if (j != i && crossing >= 0)
+          {
+            relax(portals[j], cost + crossing, node, a);
+          }
+        }
+      }
+    }
+    if (!settled[goalNode])
+    {
+      return -1;
+    }
+    estimate = nodeCost[goalNode];
+
+    // Walk back to the first node of the path. Its area is the only one the
+    // path is refined in.
+    int node = goalNode;
+    while (nodeParent[node] >= 0 && nodeParent[node] != startPortal)
+    {
+      node = nodeParent[node];
+    }
+    firstArea = nodeArea[node];
+    if (node == portalCount)
+    {
+      queue[0] = to;
+      searchArea(queue, 1, firstArea);
+      firstTarget = to;
+    } else
+    {
+      searchArea(portalCells[node], portalCells[node].length, firstArea);
+      firstTarget = node;
+    }
+    if (cellStamp[from] != cellGeneration)
+    {
+      firstTarget = -1;
+      return -1;
+    }
+    return estimate;
+  }
+
+  private void relax(int node, int cost, int parent, int via)
+  {
+    if (settled[node] || cost >= nodeCost[node])
+    {
+      return;
+    }
+    nodeParent[node] = parent;
+    nodeArea[node] = via;
+    if (nodeCost[node] == Integer.MAX_VALUE)
+    {
+      nodeCost[node] = cost;
+      open.insert(node, cost);
+    } else
+    {
+      nodeCost[node] = cost;
+      open.decreaseKey(node, cost);
+    }
+  }
+
+  /**
+   * A breadth first search out from a set of cells that stays inside one area
+   * and its portals. Afterwards every cell that was reached knows its
+   * distance to the nearest source and the direction to move in to get
+   * there.
+   */
+  private void searchArea(int[] sources, int count, int a)
+  {
+    cellGeneration++;
+    if (cellGeneration == Integer.MAX_VALUE)
+    {
+      Arrays.fill(cellStamp, 0);
+      cellGeneration = 1;
+    }
+    int head = 0;
+    int tail = 0;
+    for (int i = 0; i < count; i++)
+    {
+      int cell = sources[i];
+      cellStamp[cell] = cellGeneration;
+      cellDistance[cell] = 0;
+      cellDirection[cell] = -1;
+      queue[tail++] = cell;
+    }
+    while (head < tail)
+    {
+      int cell = queue[head++];
+      int moves = grid.moves(cell);
+      while (moves != 0)
+      {
+        int d = Integer.numberOfTrailingZeros(moves);
+        moves &= moves - 1;
+        int next = grid.neighbor(cell, d);
+        if (cellStamp[next] != cellGeneration && inArea(next, a))
+        {
+          cellStamp[next] = cellGeneration;
+          cellDistance[next] = cellDistance[cell] + 1;
+          cellDirection[next] = (byte) ((d + 4) & 7);
+          queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  private boolean inArea(int cell, int a)
+  {
+    if (area[cell] == a)
+    {
+      return true;
+    }
+    int p = portal[cell];
+    return p >= 0 && indexOf(portalAreas[p], a) >= 0;
+  }
+
+  /**
+   * @return The distance from the last area search to the nearest of the
+   *         cells, or -1 if none of them were reached.
+   */
+  private int distanceTo(int[] cells)
+  {
+    int best = -1;
+    for (int cell : cells)
+    {
+      if (cellStamp[cell] == cellGeneration
+          && (best < 0 || cellDistance[cell] < best))
+      {
+        best = cellDistance[cell];
+      }
+    }
+    return best;
+  }
+
+  /**
+   * @return The estimated number of moves of the path found by the last
+   *         search, or -1 if there was none.
+   */
+  public int pathLength()
+  {
+    return estimate;
+  }
+
+  /**
+   * @return The number of portals that were expanded by the last search.
+   */
+  public int getExpansions()
+  {
+    return expansions;
+  }
+
+  /**
+   * @return The area the first part of the last path was refined in.
+   */
+  public int getFirstArea()
+  {
+    return firstArea;
+  }
+
+  /**
+   * @return The direction of the first move along the path found by the last
+   *         search, or -1 if there is no move to make.
+   */
+  public int firstDirection()
+  {
+    if (firstTarget < 0)
+    {
+      return -1;
+    }
+    return cellDirection[start];
+  }
+
+  /**
+   * Copies the cells of the refined part of the last path into the given
+   * array. These are the cells from the start to the first portal on the way,
+   * or to the goal if there is no portal left to cross.
+   *
+   * @param path
+   *          The array to fill. It must be long enough to hold the path.
+   * @return The number of cells written.
+   */
+  public int getPath(int[] path)
+  {
+    if (firstTarget < 0)
+    {
+      return 0;
+    }
+    int count = 0;
+    int cell = start;
+    path[count++] = cell;
+    while (cellDirection[cell] >= 0)
+    {
+      cell = grid.neighbor(cell, cellDirection[cell]);
+      path[count++] = cell;
+    }
+    return count;
+  }
+}
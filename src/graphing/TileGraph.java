@@ -1,30 +1,128 @@
 package graphing;
 
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-
+import game_engine.Attributes;
+import levels.HouseLayout;
 import levels.Tile;
 /**
- * 
+ *
  * @author Jeffrey McCall
- * This class constructs the graph used for pathfinding which is represented by a
- * HashMap called tileGraph. 
+ * This class constructs the graph used for pathfinding. The graph is a
+ * NavGrid built from the game board, along with one GraphNode per cell
+ * stored in an array indexed by cell id.
  */
 public class TileGraph
 {
-  public static Map<Tile,GraphNode> tileGraph = Collections.synchronizedMap(new HashMap<>());
-  
+  public static NavGrid navGrid;
+  private static GraphNode[] nodes = new GraphNode[0];
+  private static JumpPointSearch jumpPointSearch;
+  private static RoomGraph roomGraph;
+  private static PathSmoother pathSmoother;
+  private static NavMesh navMesh;
+  private static HouseLayout houseLayout;
+
+  // The values of Attributes.Long_Path_Planner that plan the master zombie's
+  // long chases over the rooms or the navigation mesh. Anything else sends
+  // them to the planning service.
+  public static final String ROOM_PLANNER = "rooms";
+  public static final String MESH_PLANNER = "mesh";
+
+  /**
+   * This method creates the graph for the given game board. Any graph that
+   * was built for a previous board is replaced.
+   * @param gameBoard
+   *        The board of tiles, indexed as gameBoard[z][x].
+   */
+  public static void createGraph(Tile[][] gameBoard)
+  {
+    createGraph(gameBoard, null);
+  }
   /**
-   * This class creates the graph by adding all of the nodes to
-   * tileGraph.
-   * @param node
-   *        The GraphNode object to be added to the graph.
+   * This method creates the graph for the given game board, along with the
+   * navigation mesh or the graph of rooms if the settings ask for one of them
+   * to plan the long chases. The graph of rooms is only made if the layout of
+   * the level is known.
+   * @param gameBoard
+   *        The board of tiles, indexed as gameBoard[z][x].
+   * @param layout
+   *        The rooms and hallways the board was generated from, or null if
+   *        the board was not made by ProceduralMap.
+   */
+  public static void createGraph(Tile[][] gameBoard, HouseLayout layout)
+  {
+    NavGrid grid = new NavGrid(gameBoard);
+    if (layout != null
+        && (layout.width != grid.width || layout.height != grid.height))
+    {
+      layout = null;
+    }
+    GraphNode[] newNodes = new GraphNode[grid.size];
+    for (int cell = 0; cell < grid.size; cell++)
+    {
+      newNodes[cell] = new GraphNode(grid, cell);
+    }
+    nodes = newNodes;
+    jumpPointSearch = new JumpPointSearch(grid);
+    roomGraph = layout == null || !ROOM_PLANNER.equals(Attributes.Long_Path_Planner)
+        ? null : new RoomGraph(grid, layout);
+    pathSmoother = new PathSmoother(grid);
+    navMesh = MESH_PLANNER.equals(Attributes.Long_Path_Planner)
+        ? new NavMesh(grid, layout) : null;
+    PlannerRegistry.select(grid, Attributes.Path_Planner);
+    houseLayout = layout;
+    navGrid = grid;
+  }
+  /**
+   * Gets the Jump Point Search used for long chases on the animation thread.
+   * It finds paths of the same length as A* with octile costs, but only puts
+   * the cells where the path turns on its open list.
+   * @return
+   *        The jump point search for the current graph.
+   */
+  public static JumpPointSearch getJumpPointSearch()
+  {
+    return jumpPointSearch;
+  }
+  /**
+   * Gets the graph of rooms and the openings between them, used to plan
+   * chases across the whole house without searching every tile of it.
+   * @return
+   *        The room graph for the current board, or null if the layout of
+   *        the board is not known or the rooms don't plan the long chases.
+   */
+  public static RoomGraph getRoomGraph()
+  {
+    return roomGraph;
+  }
+  /**
+   * Gets the smoother used to turn the tile paths of zombies into straight
+   * lines that can be walked at any angle.
+   * @return
+   *        The path smoother for the current board.
    */
-  public static void createGraph(GraphNode node)
+  public static PathSmoother getPathSmoother()
   {
-    tileGraph.put(node.nodeTile,node);
+    return pathSmoother;
+  }
+  /**
+   * Gets the navigation mesh of the floor, used to find paths that can be
+   * walked at any angle without searching every tile.
+   * @return
+   *        The navigation mesh for the current board, or null if the mesh
+   *        doesn't plan the long chases.
+   */
+  public static NavMesh getNavMesh()
+  {
+    return navMesh;
+  }
+  /**
+   * Gets the layout of the level the graph was built for, which knows the
+   * fewest moves between each of its rooms and hallways.
+   * @return
+   *        The layout of the current board, or null if it is not known.
+   */
+  public static HouseLayout getLayout()
+  {
+    return houseLayout;
   }
   /**
    * Gets the appropriate node based on the tile that
@@ -33,14 +131,54 @@ public class TileGraph
    *        The tile object being passed in.
    * @return
    *        The GraphNode object associated with the given
-   *        tile.
+   *        tile, or null if the tile is not in the graph.
    */
   public static GraphNode getNode(Tile tile)
   {
-    if(tileGraph.containsKey(tile))
+    if (tile == null)
     {
-      return tileGraph.get(tile);
+      return null;
+    }
+    GraphNode node = getNode(tile.col, tile.row);
+    if (node != null && node.nodeTile == tile)
+    {
+      return node;
     }
     return null;
   }
+  /**
+   * Gets the node for the given cell of the navigation grid.
+   * @param cell
+   *        The id of the cell.
+   * @return
+   *        The GraphNode object for that cell.
+   */
+  public static GraphNode getNode(int cell)
+  {
+    return nodes[cell];
+  }
+  /**
+   * Gets the node for the tile at gameBoard[z][x].
+   * @param z
+   *        The first index into the game board.
+   * @param x
+   *        The second index into the game board.
+   * @return
+   *        The GraphNode object for that tile, or null if it
+   *        is not on the board.
+   */
+  public static GraphNode getNode(int z, int x)
+  {
+    NavGrid grid = navGrid;
+    if (grid == null)
+    {
+      return null;
+    }
+    int cell = grid.cell(z, x);
+    if (cell < 0)
+    {
+      return null;
+    }
+    return nodes[cell];
+  }
 }
@@ -0,0 +1,217 @@
+package levels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import levels.ProceduralMap.Rectangle;
+
+/**
+ * The rooms and hallways of a level made by ProceduralMap, kept together
+ * with the tiles the level was written out as. Each area is stored as the box of
+ * floor tiles inside its walls, in the same coordinates as the game board,
+ * so area i covers gameBoard[z][x] for minZ[i] <= z <= maxZ[i] and
+ * minX[i] <= x <= maxX[i]. Decorations inside a room are still counted as
+ * part of it; they are walls on the board.
+ *
+ * The layout also keeps the fewest moves it takes to walk from any floor tile
+ * of one area to any floor tile of another, worked out once when the level
+ * is generated. That gives a lower bound on the walking distance between two
+ * tiles that can be looked up instead of searched for.
+ */
+public class HouseLayout
+{
+  public final int areaCount;
+  public final int[] minX;
+  public final int[] maxX;
+  public final int[] minZ;
+  public final int[] maxZ;
+  public final int[] region;
+  public final boolean[] isRoom;
+  public final int width;
+  public final int height;
+  // The tiles of the level, indexed as board[z][x].
+  public final Tile[][] board;
+
+  // The area each tile is in, indexed z * width + x, or -1.
+  private final int[] areaOfTile;
+  // areaDistance[a * areaCount + b] is the fewest moves between a floor tile
+  // of area a and one of area b, or -1 if there is no way between them.
+  private final int[] areaDistance;
+
+  /**
+   * Builds the layout from the regions used to generate a level, and works
+   * out the distances between its areas on the finished board. The
+   * rectangles must already have been resized to the size of the board.
+   *
+   * @param regions
+   *          The list of regions from ProceduralMap, where the first list is
+   *          the bounds of the four regions and the rest are their rooms and
+   *          hallways.
+   * @param board
+   *          The tiles of the level, indexed as board[z][x].
+   */
+  HouseLayout(ArrayList<ArrayList<Rectangle>> regions, Tile[][] board)
+  {
+    this.board = board;
+    int count = 0;
+    for (int i = 1; i < regions.size(); i++)
+    {
+      count += regions.get(i).size();
+    }
+    areaCount = count;
+    minX = new int[count];
+    maxX = new int[count];
+    minZ = new int[count];
+    maxZ = new int[count];
+    region = new int[count];
+    isRoom = new boolean[count];
+    int area = 0;
+    for (int i = 1; i < regions.size(); i++)
+    {
+      for (Rectangle r : regions.get(i))
+      {
+        // fillMap puts the last row and column of every rectangle in its
+        // walls, and shifts everything down and to the right by one for the
+        // border.
+        minX[area] = r.x + 1;
+        maxX[area] = r.x + r.width - 1;
+        minZ[area] = r.y + 1;
+        maxZ[area] = r.y + r.height - 1;
+        region[area] = r.region;
+        isRoom[area] = r.isRoom;
+        area++;
+      }
+    }
+    height = board.length;
+    width = board[0].length;
+    areaOfTile = new int[width * height];
+    Arrays.fill(areaOfTile, -1);
+    for (int i = 0; i < count; i++)
+    {
+      for (int z = Math.max(minZ[i], 0); z <= Math.min(maxZ[i], height - 1); z++)
+      {
+        for (int x = Math.max(minX[i], 0); x <= Math.min(maxX[i], width - 1); x++)
+        {
+          if (areaOfTile[z * width + x] < 0)
+          {
+            areaOfTile[z * width + x] = i;
+          }
+        }
+      }
+    }
+    areaDistance = new int[count * count];
+    Arrays.fill(areaDistance, -1);
+    int[] distance = new int[width * height];
+    int[] queue = new int[width * height];
+    for (int i = 0; i < count; i++)
+    {
+      measureFrom(i, board, distance, queue);
+    }
+  }
+
+  /**
+   * Walks out from every floor tile of one area at once, with the same moves
+   * the zombies can make, and keeps the distance at which each other area is
+   * first reached.
+   */
+  private void measureFrom(int area, Tile[][] board, int[] distance,
+      int[] queue)
+  {
+    Arrays.fill(distance, -1);
+    int head = 0;
+    int tail = 0;
+    for (int z = minZ[area]; z <= maxZ[area]; z++)
+    {
+      for (int x = minX[area]; x <= maxX[area]; x++)
+      {
+        if (isFloor(board, z, x) && areaOfTile[z * width + x] == area)
+        {
+          distance[z * width + x] = 0;
+          queue[tail++] = z * width + x;
+        }
+      }
+    }
+    while (head < tail)
+    {
+      int tile = queue[head++];
+      int z = tile / width;
+      int x = tile % width;
+      int other = areaOfTile[tile];
+      int known = areaDistance[area * areaCount + Math.max(other, 0)];
+      if (other >= 0 && known < 0)
+      {
+        areaDistance[area * areaCount + other] = distance[tile];
+      }
+      for (int dz = -1; dz <= 1; dz++)
+      {
+        for (int dx = -1; dx <= 1; dx++)
+        {
+          int nz = z + dz;
+          int nx = x + dx;
+          // A diagonal move can't cut the corner of a wall.
+          if (!isFloor(board, nz, nx) || distance[nz * width + nx] >= 0
+              || (dz != 0 && dx != 0
+                  && (!isFloor(board, z, nx) || !isFloor(board, nz, x))))
+          {
+            continue;
+          }
+          distance[nz * width + nx] = distance[tile] + 1;
+          queue[tail++] = nz * width + nx;
+        }
+      }
+    }
+  }
+
+  private boolean isFloor(Tile[][] board, int z, int x)
+  {
+    return z >= 0 && x >= 0 && z < height && x < width && !board[z][x].isWall;
+  }
+
+  /**
+   * @return The area that covers gameBoard[z][x], or -1 if that tile is a
+   *         wall or doorway between areas or is outside of the house.
+   */
+  public int areaAt(int z, int x)
+  {
+    if (z < 0 || x < 0 || z >= height || x >= width)
+    {
+      return -1;
+    }
+    return areaOfTile[z * width + x];
+  }
+
+  /**
+   * @return The fewest moves between a floor tile of one area and a floor
+   *         tile of another, or -1 if there is no way between them.
+   */
+  public int areaDistance(int from, int to)
+  {
+    return areaDistance[from * areaCount + to];
+  }
+
+  /**
+   * Gives a number of moves that walking from one floor tile to another
+   * can't take fewer than. This is the larger of the distance between their
+   * areas and the distance in a straight line, so it never costs more than a
+   * lookup.
+   *
+   * @return The lower bound on the walking distance, or Integer.MAX_VALUE if
+   *         the two tiles are in areas that can't be walked between.
+   */
+  public int walkingDistanceBound(int fromZ, int fromX, int toZ, int toX)
+  {
+    int bound = Math.max(Math.abs(fromZ - toZ), Math.abs(fromX - toX));
+    int from = areaAt(fromZ, fromX);
+    int to = areaAt(toZ, toX);
+    if (from >= 0 && to >= 0)
+    {
+      int between = areaDistance(from, to);
+      if (between < 0)
+      {
+        return Integer.MAX_VALUE;
+      }
+      bound = Math.max(bound, between);
+    }
+    return bound;
+  }
+}
@@ -30,6 +30,20 @@ public class ProceduralMap
    * @return a newly generated level as a 2d array of Tile objects in rows x columns format
    */
   public static Tile[][] generateMap(int rows, int cols, int difficulty){
+    return generateLevel(rows, cols, difficulty).board;
+  }
+  
+  /**Generates a level the same way as generateMap, and keeps the rooms and
+   * hallways it was made from along with its tiles, so that the structure of
+   * the level can be used after it has been turned into tiles.
+   * 
+   * @param rows
+   * @param cols
+   * @param difficulty
+   * @return the layout of the newly generated level, whose board is the 2d
+   * array of Tile objects in rows x columns format
+   */
+  public static HouseLayout generateLevel(int rows, int cols, int difficulty){
     rows /= 4;
     cols /= 4;
     
@@ -50,7 +64,7 @@ public class ProceduralMap
     resizeRectangles(regions);
     fillMap(map, regions, difficulty);
     
-    return map;
+    return new HouseLayout(regions, map);
   }
   
   /**
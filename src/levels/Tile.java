@@ -34,10 +34,6 @@ public class Tile
   private double zombieSpawn = 0.010;
   private Random rand = new Random();
   public double movementCost = 1;
-  public boolean wallNW = false;
-  public boolean wallNE = false;
-  public boolean wallSE = false;
-  public boolean wallSW = false;
 
   /**
    * This constructor takes a integer argument for the type of the tile and
@@ -277,4 +273,16 @@ public class Tile
     Tile otherTile = (Tile) object;
     return otherTile.row == this.row && otherTile.col == this.col;
   }
+
+  /**
+   * Overrides hashCode to be consistent with equals, so that tiles with the
+   * same row and col hash to the same bucket.
+   * 
+   * @return A hash code built from the row and col of the tile.
+   */
+  @Override
+  public int hashCode()
+  {
+    return 31 * row + col;
+  }
 }
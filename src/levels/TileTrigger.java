@@ -0,0 +1,32 @@
+package levels;
+
+/**
+ * Something that happens when the player walks onto or off of a kind of
+ * tile, such as finding the way out or crossing into another region. A
+ * trigger is added to a TriggerLayer for one TileType, and is only called
+ * when the player crosses between a tile of that type and a tile of another
+ * type, so walking around on the same kind of floor calls nothing.
+ */
+public interface TileTrigger
+{
+  /**
+   * Called when the player steps onto a tile of the trigger's type.
+   *
+   * @param tile
+   *          The tile stepped onto.
+   * @param from
+   *          The tile the player came from, or null if they were off the
+   *          board or this is the first tile they have been seen on.
+   */
+  void entered(Tile tile, Tile from);
+
+  /**
+   * Called when the player steps off of a tile of the trigger's type.
+   *
+   * @param tile
+   *          The tile stepped off of.
+   * @param to
+   *          The tile the player went onto, or null if they left the board.
+   */
+  void left(Tile tile, Tile to);
+}
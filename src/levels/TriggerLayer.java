@@ -0,0 +1,134 @@
+package levels;
+
+import java.util.ArrayList;
+
+import levels.Tile.TileType;
+
+/**
+ * The triggers of a level, keyed by the type of tile they fire on: the
+ * exits, the floors of the regions, and whatever else is laid out on the
+ * board as tiles. The player's position is handed to the layer every frame,
+ * but the layer only does anything when the player has crossed onto another
+ * tile, and then it reads the type of the new tile from an array and calls
+ * the triggers for the types that were left and entered.
+ *
+ * The layer follows one mover, the player, and is used from the animation
+ * thread only.
+ */
+public class TriggerLayer
+{
+  public final int width;
+  public final int height;
+
+  private final Tile[][] gameBoard;
+  // The ordinal of the type of gameBoard[z][x], at z * width + x.
+  private final byte[] typeOf;
+  // The triggers for each type of tile, by its ordinal.
+  private final ArrayList<ArrayList<TileTrigger>> triggers = new ArrayList<>();
+
+  // The tile the player was last seen on as z * width + x, or -1 if they
+  // were off the board or haven't been seen yet.
+  private int current = -1;
+
+  /**
+   * @param gameBoard
+   *          The board of tiles, indexed as gameBoard[z][x].
+   */
+  public TriggerLayer(Tile[][] gameBoard)
+  {
+    this.gameBoard = gameBoard;
+    height = gameBoard.length;
+    width = height == 0 ? 0 : gameBoard[0].length;
+    typeOf = new byte[width * height];
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        typeOf[z * width + x] = (byte) gameBoard[z][x].type.ordinal();
+      }
+    }
+    for (int i = 0; i < TileType.values().length; i++)
+    {
+      triggers.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Adds a trigger that is called when the player steps onto or off of a
+   * tile of the given type from a tile of another type.
+   */
+  public void addTrigger(TileType type, TileTrigger trigger)
+  {
+    triggers.get(type.ordinal()).add(trigger);
+  }
+
+  /**
+   * Tells the layer where the player is. If they have crossed onto a tile of
+   * another type since the last call, the triggers for the type they left are
+   * called, and then those for the type they entered.
+   *
+   * @param x
+   *          The x coordinate of the player.
+   * @param z
+   *          The z coordinate of the player.
+   */
+  public void moveTo(double x, double z)
+  {
+    int cell = -1;
+    if (x >= 0 && z >= 0 && x < width && z < height)
+    {
+      cell = (int) z * width + (int) x;
+    }
+    if (cell == current)
+    {
+      return;
+    }
+    int last = current;
+    current = cell;
+    int lastType = last < 0 ? -1 : typeOf[last];
+    int type = cell < 0 ? -1 : typeOf[cell];
+    if (type == lastType)
+    {
+      return;
+    }
+    Tile from = tileAt(last);
+    Tile to = tileAt(cell);
+    if (lastType >= 0)
+    {
+      for (TileTrigger trigger : triggers.get(lastType))
+      {
+        trigger.left(from, to);
+      }
+    }
+    if (type >= 0)
+    {
+      for (TileTrigger trigger : triggers.get(type))
+      {
+        trigger.entered(to, from);
+      }
+    }
+  }
+
+  private Tile tileAt(int cell)
+  {
+    return cell < 0 ? null : gameBoard[cell / width][cell % width];
+  }
+
+  /**
+   * @return The tile the player was last seen on, or null if they were off
+   *         the board.
+   */
+  public Tile getTile()
+  {
+    return tileAt(current);
+  }
+
+  /**
+   * Forgets where the player was, so the next call to moveTo enters whatever
+   * tile they are on as if they had just arrived.
+   */
+  public void reset()
+  {
+    current = -1;
+  }
+}
@@ -0,0 +1,279 @@
+package utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import collision.Collision;
+import collision.CollisionWorld;
+import collision.SpatialHash;
+import javafx.geometry.Bounds;
+import javafx.scene.shape.Box;
+import javafx.scene.shape.Cylinder;
+import levels.ProceduralMap;
+import levels.Tile;
+
+/**
+ * Compares checking for walls through the bounds of the nodes in the scene,
+ * the way the game used to, against the CollisionWorld, which works on plain
+ * numbers. The nodes are checked both by going over every wall and by only
+ * looking at the walls on the tiles under the shape. The game no longer
+ * checks nodes either way; both are kept here only for comparison.
+ * The world is also run on every core at once, which the nodes can't be.
+ *
+ * The node bounds are boxes while the world uses circles, so near the corners
+ * of walls the two can disagree; the share of checks where they agree is
+ * printed as well.
+ *
+ * Last, it checks a circle the size of the player's stab against more and
+ * more zombies spread over a generated house, once by going over all of them
+ * and once through a SpatialHash, and then finds every zombie inside the arc
+ * of a stab through the hash.
+ *
+ * Run from the project folder. Map files can be given as arguments to use them
+ * instead of the test maps. No window is opened.
+ */
+public class CollisionBenchmark
+{
+  private static final int CHECKS = 20000;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int[] GENERATED_SIZES = { 50, 100 };
+  private static final double RADIUS = .25;
+  private static final int[] BODY_COUNTS = { 10, 100, 1000, 10000 };
+  private static final int HOUSE_SIZE = 100;
+  private static final double STAB_HALF_ANGLE = 50;
+
+  public static void main(String[] args) throws IOException
+  {
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<Tile[][]> maps = new ArrayList<>();
+    if (args.length > 0)
+    {
+      for (String path : args)
+      {
+        names.add(path);
+        maps.add(MapLoader.loadLevel(path));
+      }
+    } else
+    {
+      File[] files = new File("Resources/Maps").listFiles();
+      if (files != null)
+      {
+        Arrays.sort(files);
+        for (File file : files)
+        {
+          if (file.getName().startsWith("testmap"))
+          {
+            names.add(file.getName());
+            maps.add(MapLoader.loadLevel(file.getPath()));
+          }
+        }
+      }
+      for (int size : GENERATED_SIZES)
+      {
+        names.add("generated " + size + "x" + size);
+        maps.add(ProceduralMap.generateMap(size, size, 2));
+      }
+    }
+
+    System.out.printf("%-20s %8s %12s %12s %12s %12s %8s%n", "map", "walls",
+        "scan ns", "tiles ns", "world ns", "parallel ns", "agree");
+    for (int i = 0; i < maps.size(); i++)
+    {
+      run(names.get(i), maps.get(i));
+    }
+
+    System.out.printf("%n%8s %12s %12s %12s %8s %8s%n", "bodies", "list ns",
+        "hash ns", "arc ns", "hits", "stabbed");
+    for (int bodies : BODY_COUNTS)
+    {
+      runBodies(bodies);
+    }
+  }
+
+  private static void runBodies(int bodies)
+  {
+    Random rand = new Random(351);
+    double[] bodyX = new double[bodies];
+    double[] bodyZ = new double[bodies];
+    SpatialHash hash = new SpatialHash(CollisionWorld.BODY_CELL_SIZE);
+    hash.setCount(bodies);
+    for (int i = 0; i < bodies; i++)
+    {
+      bodyX[i] = rand.nextDouble() * HOUSE_SIZE;
+      bodyZ[i] = rand.nextDouble() * HOUSE_SIZE;
+      hash.move(i, bodyX[i], bodyZ[i], .2);
+    }
+    double[] xs = new double[CHECKS];
+    double[] zs = new double[CHECKS];
+    for (int i = 0; i < CHECKS; i++)
+    {
+      xs[i] = rand.nextDouble() * HOUSE_SIZE;
+      zs[i] = rand.nextDouble() * HOUSE_SIZE;
+    }
+    double cosHalfAngle = Math.cos(Math.toRadians(STAB_HALF_ANGLE));
+    int[] found = new int[bodies];
+    long listTime = 0;
+    long hashTime = 0;
+    long arcTime = 0;
+    int hits = 0;
+    int stabbed = 0;
+    for (int round = 0; round <= WARMUP_ROUNDS; round++)
+    {
+      hits = 0;
+      stabbed = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < CHECKS; i++)
+      {
+        for (int j = 0; j < bodies; j++)
+        {
+          if (Collision.circlesHit(xs[i], zs[i], 1, bodyX[j], bodyZ[j], .2))
+          {
+            break;
+          }
+        }
+      }
+      listTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i = 0; i < CHECKS; i++)
+      {
+        if (hash.firstHit(xs[i], zs[i], 1, -1) >= 0)
+        {
+          hits++;
+        }
+      }
+      hashTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i = 0; i < CHECKS; i++)
+      {
+        // The stabs face every way in turn.
+        double facing = i * (2 * Math.PI / CHECKS);
+        stabbed += hash.arcHits(xs[i], zs[i], 1, Math.sin(facing),
+            Math.cos(facing), cosHalfAngle, found);
+      }
+      arcTime = System.nanoTime() - start;
+    }
+    System.out.printf("%8d %12.1f %12.1f %12.1f %8d %8d%n", bodies,
+        (double) listTime / CHECKS, (double) hashTime / CHECKS,
+        (double) arcTime / CHECKS, hits, stabbed);
+  }
+
+  private static void run(String name, Tile[][] map)
+  {
+    if (map == null || map.length == 0)
+    {
+      return;
+    }
+    int height = map.length;
+    int width = map[0].length;
+    ArrayList<Box> walls = new ArrayList<>();
+    Box[] wallAt = new Box[width * height];
+    for (int z = 0; z < height; z++)
+    {
+      for (int x = 0; x < width; x++)
+      {
+        if (map[z][x].isWall)
+        {
+          Box box = new Box(1, 2, 1);
+          box.setTranslateX(x + .5);
+          box.setTranslateZ(z + .5);
+          walls.add(box);
+          wallAt[z * width + x] = box;
+        }
+      }
+    }
+    CollisionWorld world = new CollisionWorld(map);
+    Random rand = new Random(351);
+    double[] xs = new double[CHECKS];
+    double[] zs = new double[CHECKS];
+    for (int i = 0; i < CHECKS; i++)
+    {
+      xs[i] = rand.nextDouble() * width;
+      zs[i] = rand.nextDouble() * height;
+    }
+    Cylinder shape = new Cylinder(RADIUS, 1);
+
+    long scanTime = 0;
+    long tileTime = 0;
+    long worldTime = 0;
+    long parallelTime = 0;
+    int agree = 0;
+    for (int round = 0; round <= WARMUP_ROUNDS; round++)
+    {
+      agree = 0;
+      long start = System.nanoTime();
+      boolean[] scanHits = new boolean[CHECKS];
+      for (int i = 0; i < CHECKS; i++)
+      {
+        shape.setTranslateX(xs[i]);
+        shape.setTranslateZ(zs[i]);
+        for (Box wall : walls)
+        {
+          if (shape.getBoundsInParent().intersects(wall.getBoundsInParent()))
+          {
+            scanHits[i] = true;
+            break;
+          }
+        }
+      }
+      scanTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < CHECKS; i++)
+      {
+        shape.setTranslateX(xs[i]);
+        shape.setTranslateZ(zs[i]);
+        tileHit(shape, wallAt, width, height);
+      }
+      tileTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < CHECKS; i++)
+      {
+        if (world.hitsWall(xs[i], zs[i], RADIUS) == scanHits[i])
+        {
+          agree++;
+        }
+      }
+      worldTime = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      IntStream.range(0, CHECKS).parallel()
+          .filter(i -> world.hitsWall(xs[i], zs[i], RADIUS)).count();
+      parallelTime = System.nanoTime() - start;
+    }
+    System.out.printf("%-20s %8d %12.1f %12.1f %12.1f %12.1f %7.1f%%%n",
+        name, walls.size(), (double) scanTime / CHECKS,
+        (double) tileTime / CHECKS, (double) worldTime / CHECKS,
+        (double) parallelTime / CHECKS, 100.0 * agree / CHECKS);
+  }
+
+  /**
+   * The check EntityManager does with the nodes: only the walls on the tiles
+   * under the shape's bounds are looked at.
+   */
+  private static Box tileHit(Cylinder shape, Box[] wallAt, int width,
+      int height)
+  {
+    Bounds bounds = shape.getBoundsInParent();
+    int minX = Math.max((int) Math.floor(bounds.getMinX()) - 1, 0);
+    int maxX = Math.min((int) Math.floor(bounds.getMaxX()), width - 1);
+    int minZ = Math.max((int) Math.floor(bounds.getMinZ()) - 1, 0);
+    int maxZ = Math.min((int) Math.floor(bounds.getMaxZ()), height - 1);
+    for (int z = minZ; z <= maxZ; z++)
+    {
+      for (int x = minX; x <= maxX; x++)
+      {
+        Box wall = wallAt[z * width + x];
+        if (wall != null && bounds.intersects(wall.getBoundsInParent()))
+        {
+          return wall;
+        }
+      }
+    }
+    return null;
+  }
+}
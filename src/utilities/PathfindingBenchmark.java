@@ -0,0 +1,456 @@
+package utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import graphing.AStarSearch;
+import graphing.DStarLite;
+import graphing.JumpPointSearch;
+import graphing.NavGrid;
+import graphing.NavMesh;
+import graphing.OccupancyGrid;
+import graphing.PathSmoother;
+import levels.ProceduralMap;
+import levels.Tile;
+
+/**
+ * Compares Jump Point Search against plain A* on the test maps in
+ * Resources/Maps and on maps made by ProceduralMap. Both searches use the same
+ * move costs, so the path costs they find have to match; any pair of cells
+ * where they don't is counted as a mismatch.
+ *
+ * It also plays out chases where the target wanders one tile at a time and
+ * the chaser follows its path, and compares the cells expanded per replan by
+ * D* Lite, which keeps its search between calls, against A* from scratch.
+ *
+ * Last, it counts how many times the A* paths turn between grid directions and
+ * how many straight lines they are left with after PathSmoother pulls them
+ * tight, and compares the size of the navigation mesh and the polygons it
+ * expands per path against the tiles A* expands.
+ *
+ * It also times checking lines between random points for walls, once by
+ * stepping through the Tile objects under the line one at a time, and once
+ * with the OccupancyGrid.
+ *
+ * Run from the project folder. Map files can be given as arguments to use them
+ * instead of the test maps.
+ */
+public class PathfindingBenchmark
+{
+  private static final int PAIRS = 2000;
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int[] GENERATED_SIZES = { 50, 100 };
+  private static final int CHASES = 40;
+  private static final int CHASE_LENGTH = 200;
+  private static final double SIGHT_REACH = 8;
+  // The line checks are short enough that they take more rounds than the
+  // searches before the compiler has settled on them.
+  private static final int SIGHT_WARMUP_ROUNDS = 15;
+
+  public static void main(String[] args) throws IOException
+  {
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<Tile[][]> maps = new ArrayList<>();
+    if (args.length > 0)
+    {
+      for (String path : args)
+      {
+        names.add(path);
+        maps.add(MapLoader.loadLevel(path));
+      }
+    } else
+    {
+      File[] files = new File("Resources/Maps").listFiles();
+      if (files != null)
+      {
+        Arrays.sort(files);
+        for (File file : files)
+        {
+          if (file.getName().startsWith("testmap"))
+          {
+            names.add(file.getName());
+            maps.add(MapLoader.loadLevel(file.getPath()));
+          }
+        }
+      }
+      for (int size : GENERATED_SIZES)
+      {
+        names.add("generated " + size + "x" + size);
+        maps.add(ProceduralMap.generateMap(size, size, 2));
+      }
+    }
+
+    System.out.printf("%-20s %8s %12s %12s %12s %12s %10s%n", "map", "pairs",
+        "A* us", "JPS us", "A* expanded", "JPS expanded", "mismatch");
+    for (int i = 0; i < maps.size(); i++)
+    {
+      run(names.get(i), maps.get(i));
+    }
+
+    System.out.printf("%n%-20s %8s %14s %14s %10s%n", "map", "replans",
+        "A* expanded", "D* expanded", "mismatch");
+    for (int i = 0; i < maps.size(); i++)
+    {
+      runChases(names.get(i), maps.get(i));
+    }
+
+    System.out.printf("%n%-20s %8s %12s %12s %12s%n", "map", "paths",
+        "cells", "turns", "segments");
+    for (int i = 0; i < maps.size(); i++)
+    {
+      runSmoothing(names.get(i), maps.get(i));
+    }
+
+    System.out.printf("%n%-20s %8s %10s %14s %14s %12s%n", "map", "floor",
+        "polygons", "A* expanded", "mesh expanded", "mesh us");
+    for (int i = 0; i < maps.size(); i++)
+    {
+      runMesh(names.get(i), maps.get(i));
+    }
+
+    System.out.printf("%n%-20s %8s %12s %12s %10s%n", "map", "lines",
+        "tiles ns", "bits ns", "visible");
+    for (int i = 0; i < maps.size(); i++)
+    {
+      runSight(names.get(i), maps.get(i));
+    }
+  }
+
+  private static void runSight(String name, Tile[][] map)
+  {
+    if (map == null || map.length == 0)
+    {
+      return;
+    }
+    OccupancyGrid occupancy = new OccupancyGrid(map);
+    Random rand = new Random(351);
+    int lines = PAIRS * 10;
+    // Half of the lines are short, about as far as a zombie can see down a
+    // room, and half go between any two points of the board.
+    double[] ends = new double[lines * 4];
+    for (int i = 0; i < ends.length; i += 4)
+    {
+      ends[i] = rand.nextDouble() * map[0].length;
+      ends[i + 1] = rand.nextDouble() * map.length;
+      double reach = i % 8 == 0 ? SIGHT_REACH : map.length;
+      ends[i + 2] = Math.max(0, Math.min(map[0].length - 1e-9,
+          ends[i] + (rand.nextDouble() * 2 - 1) * reach));
+      ends[i + 3] = Math.max(0, Math.min(map.length - 1e-9,
+          ends[i + 1] + (rand.nextDouble() * 2 - 1) * reach));
+    }
+    long tileTime = 0;
+    long bitTime = 0;
+    int visible = 0;
+    for (int round = 0; round <= SIGHT_WARMUP_ROUNDS; round++)
+    {
+      visible = 0;
+      long start = System.nanoTime();
+      for (int i = 0; i < ends.length; i += 4)
+      {
+        walkTiles(map, ends[i], ends[i + 1], ends[i + 2], ends[i + 3]);
+      }
+      tileTime = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int i = 0; i < ends.length; i += 4)
+      {
+        if (occupancy.lineOfSight(ends[i], ends[i + 1], ends[i + 2],
+            ends[i + 3]))
+        {
+          visible++;
+        }
+      }
+      bitTime = System.nanoTime() - start;
+    }
+    System.out.printf("%-20s %8d %12.1f %12.1f %9.1f%%%n", name, lines,
+        (double) tileTime / lines, (double) bitTime / lines,
+        100.0 * visible / lines);
+  }
+
+  /**
+   * Steps through every tile a line passes over, in order, and checks that
+   * each one is floor.
+   */
+  private static boolean walkTiles(Tile[][] map, double x0, double z0,
+      double x1, double z1)
+  {
+    int x = (int) Math.floor(x0);
+    int z = (int) Math.floor(z0);
+    int endX = (int) Math.floor(x1);
+    int endZ = (int) Math.floor(z1);
+    if (map[z][x].isWall)
+    {
+      return false;
+    }
+    double dx = x1 - x0;
+    double dz = z1 - z0;
+    int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+    int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+    double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(dx);
+    double deltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(dz);
+    double nextX = stepX > 0 ? (x + 1 - x0) * deltaX
+        : stepX < 0 ? (x0 - x) * deltaX : Double.POSITIVE_INFINITY;
+    double nextZ = stepZ > 0 ? (z + 1 - z0) * deltaZ
+        : stepZ < 0 ? (z0 - z) * deltaZ : Double.POSITIVE_INFINITY;
+    int remaining = Math.abs(endX - x) + Math.abs(endZ - z);
+    while (remaining > 0)
+    {
+      if (nextX < nextZ)
+      {
+        x += stepX;
+        nextX += deltaX;
+      } else
+      {
+        z += stepZ;
+        nextZ += deltaZ;
+      }
+      remaining--;
+      if (map[z][x].isWall)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Paths on the mesh go between the middles of the tiles, the same as the
+   * paths A* finds.
+   */
+  private static void runMesh(String name, Tile[][] map)
+  {
+    if (map == null)
+    {
+      return;
+    }
+    NavGrid grid = new NavGrid(map);
+    int[] floor = floor(grid);
+    if (floor == null)
+    {
+      return;
+    }
+    NavMesh mesh = new NavMesh(grid, null);
+    AStarSearch aStar = new AStarSearch(grid);
+    Random rand = new Random(351);
+    long aStarExpanded = 0;
+    long meshExpanded = 0;
+    long meshTime = 0;
+    for (int i = 0; i < PAIRS; i++)
+    {
+      int from = floor[rand.nextInt(floor.length)];
+      int to = floor[rand.nextInt(floor.length)];
+      aStar.search(from, to);
+      aStarExpanded += aStar.getExpansions();
+      long start = System.nanoTime();
+      mesh.findPath(grid.cellX(from) + .5, grid.cellZ(from) + .5,
+          grid.cellX(to) + .5, grid.cellZ(to) + .5);
+      meshTime += System.nanoTime() - start;
+      meshExpanded += mesh.getExpansions();
+    }
+    System.out.printf("%-20s %8d %10d %14.1f %14.1f %12.2f%n", name,
+        floor.length, mesh.polyCount, (double) aStarExpanded / PAIRS,
+        (double) meshExpanded / PAIRS, meshTime / 1000.0 / PAIRS);
+  }
+
+  private static void runSmoothing(String name, Tile[][] map)
+  {
+    if (map == null)
+    {
+      return;
+    }
+    NavGrid grid = new NavGrid(map);
+    int[] floor = floor(grid);
+    if (floor == null)
+    {
+      return;
+    }
+    Random rand = new Random(351);
+    AStarSearch aStar = new AStarSearch(grid);
+    PathSmoother smoother = new PathSmoother(grid);
+    int[] path = new int[grid.size];
+    int[] waypoints = new int[grid.size];
+    long cells = 0;
+    long turns = 0;
+    long segments = 0;
+    int paths = 0;
+    for (int i = 0; i < PAIRS; i++)
+    {
+      int from = floor[rand.nextInt(floor.length)];
+      int to = floor[rand.nextInt(floor.length)];
+      if (aStar.search(from, to) < 1)
+      {
+        continue;
+      }
+      int count = aStar.getPath(path);
+      int last = -1;
+      for (int j = 0; j + 1 < count; j++)
+      {
+        int d = grid.directionBetween(path[j], path[j + 1]);
+        if (last >= 0 && d != last)
+        {
+          turns++;
+        }
+        last = d;
+      }
+      cells += count;
+      segments += smoother.smooth(path, count, waypoints) - 1;
+      paths++;
+    }
+    if (paths > 0)
+    {
+      System.out.printf("%-20s %8d %12.1f %12.1f %12.1f%n", name, paths,
+          (double) cells / paths, (double) turns / paths,
+          (double) segments / paths);
+    }
+  }
+
+  /**
+   * The floor cells of the grid, or null if there are fewer than two.
+   */
+  private static int[] floor(NavGrid grid)
+  {
+    int[] floor = new int[grid.size];
+    int floorCount = 0;
+    for (int cell = 0; cell < grid.size; cell++)
+    {
+      if (grid.isWalkable(cell))
+      {
+        floor[floorCount++] = cell;
+      }
+    }
+    return floorCount < 2 ? null : Arrays.copyOf(floor, floorCount);
+  }
+
+  /**
+   * Every call the target has a one in ten chance of moving to a neighboring
+   * tile and the chaser a one in five chance of taking a step along its path,
+   * which is about how often each changes tiles between zombie updates.
+   */
+  private static void runChases(String name, Tile[][] map)
+  {
+    if (map == null)
+    {
+      return;
+    }
+    NavGrid grid = new NavGrid(map);
+    int[] floor = floor(grid);
+    if (floor == null)
+    {
+      return;
+    }
+    Random rand = new Random(351);
+    AStarSearch aStar = new AStarSearch(grid);
+    long aStarExpanded = 0;
+    long dStarExpanded = 0;
+    int replans = 0;
+    int mismatches = 0;
+    for (int chase = 0; chase < CHASES; chase++)
+    {
+      DStarLite dStar = new DStarLite(grid);
+      int chaser = floor[rand.nextInt(floor.length)];
+      int target = floor[rand.nextInt(floor.length)];
+      for (int step = 0; step < CHASE_LENGTH; step++)
+      {
+        int moves = grid.moves(target);
+        if (moves != 0 && rand.nextInt(10) == 0)
+        {
+          int d;
+          do
+          {
+            d = rand.nextInt(8);
+          } while ((moves & (1 << d)) == 0);
+          target = grid.neighbor(target, d);
+        }
+        int cost = dStar.replan(chaser, target);
+        aStar.search(chaser, target);
+        dStarExpanded += dStar.getExpansions();
+        aStarExpanded += aStar.getExpansions();
+        replans++;
+        if (cost != aStar.pathCost())
+        {
+          mismatches++;
+        }
+        if (cost > 0 && rand.nextInt(5) == 0)
+        {
+          chaser = grid.neighbor(chaser, dStar.firstDirection());
+        }
+      }
+    }
+    System.out.printf("%-20s %8d %14.1f %14.1f %10d%n", name, replans,
+        (double) aStarExpanded / replans, (double) dStarExpanded / replans,
+        mismatches);
+  }
+
+  private static void run(String name, Tile[][] map)
+  {
+    if (map == null)
+    {
+      System.out.printf("%-20s could not be loaded%n", name);
+      return;
+    }
+    NavGrid grid = new NavGrid(map);
+    int[] floor = floor(grid);
+    if (floor == null)
+    {
+      System.out.printf("%-20s has no floor to search%n", name);
+      return;
+    }
+    int floorCount = floor.length;
+
+    Random rand = new Random(351);
+    int[] from = new int[PAIRS];
+    int[] to = new int[PAIRS];
+    for (int i = 0; i < PAIRS; i++)
+    {
+      from[i] = floor[rand.nextInt(floorCount)];
+      to[i] = floor[rand.nextInt(floorCount)];
+    }
+
+    AStarSearch aStar = new AStarSearch(grid, 10, 14);
+    JumpPointSearch jps = new JumpPointSearch(grid, 10, 14);
+    for (int round = 0; round < WARMUP_ROUNDS; round++)
+    {
+      for (int i = 0; i < PAIRS; i++)
+      {
+        aStar.search(from[i], to[i]);
+        jps.search(from[i], to[i]);
+      }
+    }
+
+    long aStarExpanded = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < PAIRS; i++)
+    {
+      aStar.search(from[i], to[i]);
+      aStarExpanded += aStar.getExpansions();
+    }
+    long aStarTime = System.nanoTime() - start;
+
+    long jpsExpanded = 0;
+    start = System.nanoTime();
+    for (int i = 0; i < PAIRS; i++)
+    {
+      jps.search(from[i], to[i]);
+      jpsExpanded += jps.getExpansions();
+    }
+    long jpsTime = System.nanoTime() - start;
+
+    int mismatches = 0;
+    for (int i = 0; i < PAIRS; i++)
+    {
+      aStar.search(from[i], to[i]);
+      jps.search(from[i], to[i]);
+      if (aStar.pathCost() != jps.pathCost())
+      {
+        mismatches++;
+      }
+    }
+
+    System.out.printf("%-20s %8d %12.2f %12.2f %12.1f %12.1f %10d%n", name,
+        PAIRS, aStarTime / 1000.0 / PAIRS, jpsTime / 1000.0 / PAIRS,
+        (double) aStarExpanded / PAIRS, (double) jpsExpanded / PAIRS,
+        mismatches);
+  }
+}
@@ -3,12 +3,12 @@ package utilities;
 
 import java.util.ArrayList;
 
+import collision.CollisionWorld;
 import entities.EntityManager;
 import entities.Player;
 import entities.Zombie;
 import game_engine.Attributes;
 import game_engine.Scenes;
-import graphing.GraphNode;
 import graphing.TileGraph;
 import gui.Main;
 import javafx.animation.AnimationTimer;
@@ -22,6 +22,7 @@ import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.stage.Stage;
+import levels.HouseLayout;
 import levels.ProceduralMap;
 import levels.Tile;
 import sounds.SoundManager;
@@ -88,8 +89,14 @@ public class ZombieBoardRenderer
    */
   public Scene zombieHouse2d(Stage primaryStage)
   {
+    // The last 2D game is replaced, so its path planning workers are stopped.
+    if (entityManager != null)
+    {
+      entityManager.planningService.shutdown();
+    }
     entityManager = new EntityManager(new SoundManager(), main, scenes);
-    gameBoard = ProceduralMap.generateMap(Attributes.Map_Width, Attributes.Map_Height, 2);
+    HouseLayout layout = ProceduralMap.generateLevel(Attributes.Map_Width, Attributes.Map_Height, 2);
+    gameBoard = layout.board;
     entityManager.player = new Player(20, 30);
     
     boardWidth = gameBoard[0].length;
@@ -117,6 +124,7 @@ public class ZombieBoardRenderer
       {
         entityManager.zombies.get(i).gameIsRunning.set(false);
       }
+      entityManager.planningService.shutdown();
     });
 
     scene.setOnKeyPressed(new EventHandler<KeyEvent>()
@@ -199,78 +207,6 @@ public class ZombieBoardRenderer
           isWall = true;
         } else
           isWall = false;
-        //Build the graph for zombie pathfinding.
-        if (col == 0 && row == 0)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-              gameBoard[col][row + 1], gameBoard[col + 1][row + 1], row, col,
-              isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == 0 && row == boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-              gameBoard[col][row - 1], gameBoard[col + 1][row - 1], row, col,
-              isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == boardHeight - 1 && row == 0)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col - 1][row],
-              gameBoard[col][row + 1], gameBoard[col - 1][row + 1], row, col,
-              isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == boardHeight - 1 && row == boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col - 1][row],
-              gameBoard[col][row - 1], gameBoard[col - 1][row - 1], row, col,
-              isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (row == 0 && col != 0 && col != boardHeight - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-              gameBoard[col - 1][row], gameBoard[col][row + 1],
-              gameBoard[col + 1][row + 1], gameBoard[col - 1][row + 1], row,
-              col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (row == boardWidth - 1 && col != 0 && col != boardHeight - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-              gameBoard[col - 1][row], gameBoard[col][row - 1],
-              gameBoard[col + 1][row - 1], gameBoard[col - 1][row - 1], row,
-              col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == 0 && row != 0 && row != boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-              gameBoard[col][row + 1], gameBoard[col][row - 1],
-              gameBoard[col + 1][row + 1], gameBoard[col + 1][row - 1], row,
-              col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col == boardHeight - 1 && row != 0 && row != boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col][row + 1],
-              gameBoard[col - 1][row], gameBoard[col][row - 1],
-              gameBoard[col - 1][row + 1], gameBoard[col - 1][row - 1], row,
-              col, isWall, gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
-        if (col >= 1 && col < boardHeight - 1 && row >= 1
-            && row < boardWidth - 1)
-        {
-          GraphNode newNode = new GraphNode(gameBoard[col + 1][row],
-              gameBoard[col - 1][row], gameBoard[col][row - 1],
-              gameBoard[col][row + 1], gameBoard[col + 1][row - 1],
-              gameBoard[col - 1][row + 1], gameBoard[col - 1][row - 1],
-              gameBoard[col + 1][row + 1], row, col, isWall,
-              gameBoard[col][row]);
-          TileGraph.createGraph(newNode);
-        }
         if (zombieCounter < numZombies)
         {
           entityManager.zombies.get(zombieCounter).twoDZombie(zombieCounter, row, col,
@@ -284,6 +220,10 @@ public class ZombieBoardRenderer
       }
     }
     
+    entityManager.collisionWorld = new CollisionWorld(gameBoard);
+    //Build the graph for zombie pathfinding.
+    TileGraph.createGraph(gameBoard, layout);
+
     // Add walls to map.
     for (int i = 0; i < entityManager.numTiles; i++)
     {
@@ -441,6 +381,8 @@ public class ZombieBoardRenderer
           entityManager.startMasterZombie();
         }
       }
+      entityManager.deliverPaths();
+      entityManager.planPaths(1);
       if (!isPaused)
       {
         drawGameBoard();